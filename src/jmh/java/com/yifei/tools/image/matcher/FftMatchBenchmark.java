@@ -0,0 +1,95 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 频域匹配与空间域匹配基准（TM_CCOEFF_NORMED，灰度）
+ * 在常见屏幕尺寸下逐步增大模板（宽为高的1.5倍），对比 spatial 与 fft 的耗时，找出频域开始更快的交叉点。
+ * fft 使用模板频谱缓存，与实际使用缓存模板时一致
+ *
+ * 某一行的盈亏系数 = FftMatcher.estimateSpatialCost / FftMatcher.estimateFftCost × fft耗时 / spatial耗时，
+ * ImageMatchConfig.fftCostFactor 取交叉点附近的盈亏系数即可
+ *
+ * 运行方式：mvn -Pbenchmark compile exec:exec -Djmh.args="FftMatchBenchmark -p resolution=2560x1440"
+ *
+ * @author yifei
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FftMatchBenchmark {
+
+    @Param({"1920x1080", "2560x1440", "3840x2160"})
+    public String resolution;
+
+    @Param({"32", "128", "256", "512", "768", "1024"})
+    public int templateHeight;
+
+    private Mat target;
+    private Mat template;
+    private Mat response;
+    private FftMatcher.SpectrumCache spectra;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (!ImageMatcher.isOpenCVLoaded()) {
+            throw new IllegalStateException("OpenCV库未加载，无法运行基准测试");
+        }
+        int[] screenSize = SyntheticScreens.parseSize(resolution);
+        int templateWidth = templateHeight * 3 / 2;
+        if (templateWidth >= screenSize[0] || templateHeight >= screenSize[1]) {
+            throw new IllegalArgumentException("模板大于屏幕: " + templateWidth + "x" + templateHeight + " / " + resolution);
+        }
+
+        Mat screen = SyntheticScreens.screen(screenSize[0], screenSize[1]);
+        target = new Mat();
+        Imgproc.cvtColor(screen, target, Imgproc.COLOR_BGR2GRAY);
+        screen.release();
+        template = target.submat(new Rect((target.cols() - templateWidth) / 2, (target.rows() - templateHeight) / 2,
+                templateWidth, templateHeight)).clone();
+        response = new Mat();
+        spectra = new FftMatcher.SpectrumCache();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        spectra.release();
+        response.release();
+        template.release();
+        target.release();
+    }
+
+    @Benchmark
+    public double spatial() {
+        Imgproc.matchTemplate(target, template, response, Imgproc.TM_CCOEFF_NORMED);
+        return Core.minMaxLoc(response).maxVal;
+    }
+
+    @Benchmark
+    public double fft() {
+        FftMatcher.matchTemplate(target, template, response, Imgproc.TM_CCOEFF_NORMED, spectra);
+        return Core.minMaxLoc(response).maxVal;
+    }
+}
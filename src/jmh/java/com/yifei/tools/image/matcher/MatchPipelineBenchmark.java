@@ -0,0 +1,143 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 匹配流程基准：{@link ImageMatcher#matchImages} 在不同屏幕分辨率、模板尺寸、匹配方法和配置预设下的耗时
+ *
+ * matchImages 包含目标图片解码；matchInMemory 跳过解码，只测预处理和匹配，两者之差即为PNG解码成本。
+ * 模板从合成屏幕上裁剪，因此每次都能匹配成功
+ *
+ * 运行方式：mvn -Pbenchmark compile exec:exec -Djmh.args="MatchPipelineBenchmark -p resolution=1920x1080"
+ *
+ * @author yifei
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchPipelineBenchmark {
+
+    @Param({"1920x1080", "2560x1440", "3840x2160"})
+    public String resolution;
+
+    @Param({"48x32", "160x96", "480x270"})
+    public String templateSize;
+
+    @Param({"TM_CCOEFF_NORMED", "TM_CCORR_NORMED", "TM_SQDIFF_NORMED"})
+    public String matchMethod;
+
+    @Param({"default", "highPrecision", "fast"})
+    public String preset;
+
+    private File workDir;
+    private String targetPath;
+    private String templatePath;
+    private Mat target;
+    private ImageMatchConfig config;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (!ImageMatcher.isOpenCVLoaded()) {
+            throw new IllegalStateException("OpenCV库未加载，无法运行基准测试");
+        }
+        int[] screenSize = SyntheticScreens.parseSize(resolution);
+        int[] size = SyntheticScreens.parseSize(templateSize);
+
+        workDir = SyntheticScreens.createTempDir();
+        target = SyntheticScreens.screen(screenSize[0], screenSize[1]);
+        Rect region = SyntheticScreens.templateRegion(target, size[0], size[1]);
+        Mat template = target.submat(region);
+        try {
+            templatePath = SyntheticScreens.write(template, new File(workDir, "template.png"));
+        } finally {
+            template.release();
+        }
+        targetPath = SyntheticScreens.write(target, new File(workDir, "screen.png"));
+
+        config = createConfig(preset);
+        config.setMatchMethod(methodCode(matchMethod));
+        config.setSaveProcessImages(false);
+
+        stdout = SyntheticScreens.silenceStdout();
+        MatchResult result = ImageMatcher.matchImages(templatePath, targetPath, config);
+        if (!result.isMatched()) {
+            SyntheticScreens.restoreStdout(stdout);
+            throw new IllegalStateException("合成模板未匹配成功，基准测试数据无效: " + resolution + " " + templateSize
+                    + " " + matchMethod + " " + preset);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SyntheticScreens.restoreStdout(stdout);
+        TemplateCache.clear();
+        target.release();
+        SyntheticScreens.deleteDir(workDir);
+    }
+
+    @Benchmark
+    public MatchResult matchImages() {
+        return ImageMatcher.matchImages(templatePath, targetPath, config);
+    }
+
+    @Benchmark
+    public MatchResult matchInMemory() {
+        return ImageMatcher.matchTemplateInTarget(templatePath, target, targetPath, config);
+    }
+
+    static ImageMatchConfig createConfig(String preset) {
+        switch (preset) {
+            case "highPrecision":
+                return ImageMatchConfig.getHighPrecisionConfig();
+            case "fast":
+                return ImageMatchConfig.getFastMatchConfig();
+            case "default":
+                return ImageMatchConfig.getDefaultConfig();
+            default:
+                throw new IllegalArgumentException("未知的配置预设: " + preset);
+        }
+    }
+
+    private static int methodCode(String method) {
+        switch (method) {
+            case "TM_SQDIFF":
+                return Imgproc.TM_SQDIFF;
+            case "TM_SQDIFF_NORMED":
+                return Imgproc.TM_SQDIFF_NORMED;
+            case "TM_CCORR":
+                return Imgproc.TM_CCORR;
+            case "TM_CCORR_NORMED":
+                return Imgproc.TM_CCORR_NORMED;
+            case "TM_CCOEFF":
+                return Imgproc.TM_CCOEFF;
+            case "TM_CCOEFF_NORMED":
+                return Imgproc.TM_CCOEFF_NORMED;
+            default:
+                throw new IllegalArgumentException("未知的匹配方法: " + method);
+        }
+    }
+}
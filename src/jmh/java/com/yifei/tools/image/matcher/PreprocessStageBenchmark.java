@@ -0,0 +1,118 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预处理阶段基准：{@link ImageMatcher#preprocessImage} 每个阶段单独开启时的耗时，以及三个配置预设的完整预处理耗时
+ *
+ * 单阶段测量时只开启该阶段：灰度化的输入是BGR屏幕，其余阶段的输入是已灰度化的屏幕（与预设中的实际顺序一致）；
+ * 缩放阶段使用0.5倍。输出按生产代码的方式归还缓冲池，测量的是缓冲区复用后的稳定状态
+ *
+ * 运行方式：mvn -Pbenchmark compile exec:exec -Djmh.args="PreprocessStageBenchmark"
+ *
+ * @author yifei
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreprocessStageBenchmark {
+
+    @Param({"1920x1080", "2560x1440", "3840x2160"})
+    public String resolution;
+
+    @Param({"grayscale", "gaussianBlur", "binarization", "scaling", "default", "highPrecision", "fast"})
+    public String stage;
+
+    private Mat input;
+    private ImageMatchConfig config;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (!ImageMatcher.isOpenCVLoaded()) {
+            throw new IllegalStateException("OpenCV库未加载，无法运行基准测试");
+        }
+        int[] screenSize = SyntheticScreens.parseSize(resolution);
+        Mat screen = SyntheticScreens.screen(screenSize[0], screenSize[1]);
+
+        config = createStageConfig(stage);
+        if (isSingleStage(stage) && !"grayscale".equals(stage)) {
+            input = new Mat();
+            Imgproc.cvtColor(screen, input, Imgproc.COLOR_BGR2GRAY);
+            screen.release();
+        } else {
+            input = screen;
+        }
+        stdout = SyntheticScreens.silenceStdout();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SyntheticScreens.restoreStdout(stdout);
+        input.release();
+        MatBufferPool.clearCurrentThread();
+    }
+
+    @Benchmark
+    public int preprocess() {
+        Mat processed = ImageMatcher.preprocessImage(input, config, "target");
+        int rows = processed.rows();
+        MatBufferPool.recycle(processed);
+        return rows;
+    }
+
+    private static boolean isSingleStage(String stage) {
+        return !"default".equals(stage) && !"highPrecision".equals(stage) && !"fast".equals(stage);
+    }
+
+    private static ImageMatchConfig createStageConfig(String stage) {
+        if (!isSingleStage(stage)) {
+            return MatchPipelineBenchmark.createConfig(stage);
+        }
+        ImageMatchConfig config = new ImageMatchConfig();
+        config.setEnableGrayscale(false);
+        config.setEnableGaussianBlur(false);
+        config.setEnableBinarization(false);
+        config.setEnableScaling(false);
+        switch (stage) {
+            case "grayscale":
+                config.setEnableGrayscale(true);
+                break;
+            case "gaussianBlur":
+                config.setEnableGaussianBlur(true);
+                break;
+            case "binarization":
+                config.setEnableBinarization(true);
+                break;
+            case "scaling":
+                config.setEnableScaling(true);
+                config.setScaleFactorX(0.5);
+                config.setScaleFactorY(0.5);
+                break;
+            default:
+                throw new IllegalArgumentException("未知的预处理阶段: " + stage);
+        }
+        return config;
+    }
+}
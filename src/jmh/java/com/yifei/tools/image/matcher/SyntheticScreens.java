@@ -0,0 +1,165 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * 基准测试用的合成图像
+ * 生成类似桌面截图的BGR图像（渐变背景、窗口色块、文字），固定随机种子保证每次运行内容一致，无需显示器
+ *
+ * @author yifei
+ * @version 1.0
+ */
+final class SyntheticScreens {
+
+    private static final long SEED = 20240601L;
+
+    private static final PrintStream SILENT = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+
+    private SyntheticScreens() {
+    }
+
+    /**
+     * 解析 "宽x高" 形式的尺寸参数
+     *
+     * @param size 尺寸字符串，例如 1920x1080
+     * @return {宽, 高}
+     */
+    static int[] parseSize(String size) {
+        String[] parts = size.toLowerCase().split("x");
+        return new int[]{Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())};
+    }
+
+    /**
+     * 生成合成屏幕
+     *
+     * @param width 宽度
+     * @param height 高度
+     * @return BGR图像，调用方负责释放
+     */
+    static Mat screen(int width, int height) {
+        Random random = new Random(SEED);
+        Mat screen = new Mat(height, width, CvType.CV_8UC3);
+
+        // 纵向渐变背景
+        for (int y = 0; y < height; y += 8) {
+            double shade = 40 + 60.0 * y / height;
+            Imgproc.rectangle(screen, new Point(0, y), new Point(width - 1, Math.min(height - 1, y + 7)),
+                    new Scalar(shade + 30, shade + 10, shade), -1);
+        }
+
+        // 窗口、按钮和文字，数量随面积增加以保持相近的内容密度
+        int blocks = width * height / 20000;
+        for (int i = 0; i < blocks; i++) {
+            int w = 20 + random.nextInt(Math.max(1, width / 6));
+            int h = 12 + random.nextInt(Math.max(1, height / 6));
+            int x = random.nextInt(Math.max(1, width - w));
+            int y = random.nextInt(Math.max(1, height - h));
+            Scalar color = new Scalar(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+            Imgproc.rectangle(screen, new Point(x, y), new Point(x + w, y + h), color, random.nextInt(3) == 0 ? 2 : -1);
+            Imgproc.putText(screen, "item " + i, new Point(x + 4, y + Math.min(h, 18)), Imgproc.FONT_HERSHEY_SIMPLEX,
+                    0.4 + random.nextDouble() * 0.4, new Scalar(255 - color.val[0], 255 - color.val[1], 255 - color.val[2]), 1);
+        }
+
+        // 少量噪声，避免大片完全相同的像素让匹配退化
+        Mat noise = new Mat(height, width, CvType.CV_8UC3);
+        Core.randn(noise, 0, 4);
+        Core.add(screen, noise, screen);
+        noise.release();
+        return screen;
+    }
+
+    /**
+     * 从屏幕中心偏左上的位置裁剪模板，保证模板一定能在屏幕中找到
+     *
+     * @param screen 合成屏幕
+     * @param width 模板宽度
+     * @param height 模板高度
+     * @return 模板在屏幕中的位置
+     */
+    static Rect templateRegion(Mat screen, int width, int height) {
+        int x = Math.max(0, Math.min(screen.cols() - width, screen.cols() / 3));
+        int y = Math.max(0, Math.min(screen.rows() - height, screen.rows() / 3));
+        return new Rect(x, y, Math.min(width, screen.cols()), Math.min(height, screen.rows()));
+    }
+
+    /**
+     * 创建临时目录
+     *
+     * @return 临时目录
+     */
+    static File createTempDir() {
+        try {
+            return Files.createTempDirectory("image-matcher-jmh").toFile();
+        } catch (IOException e) {
+            throw new IllegalStateException("无法创建临时目录", e);
+        }
+    }
+
+    /**
+     * 写入PNG文件
+     *
+     * @param image 图像
+     * @param file 文件
+     * @return 文件绝对路径
+     */
+    static String write(Mat image, File file) {
+        if (!Imgcodecs.imwrite(file.getAbsolutePath(), image)) {
+            throw new IllegalStateException("无法写入图像: " + file);
+        }
+        return file.getAbsolutePath();
+    }
+
+    /**
+     * 删除临时目录及其中的文件
+     *
+     * @param dir 临时目录
+     */
+    static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * 匹配流程会逐步打印日志，测量期间关闭标准输出，避免控制台写入计入耗时
+     *
+     * @return 原来的标准输出，测量结束后用 {@link #restoreStdout(PrintStream)} 恢复
+     */
+    static PrintStream silenceStdout() {
+        PrintStream original = System.out;
+        if (!Boolean.getBoolean("benchmark.verbose")) {
+            System.setOut(SILENT);
+        }
+        return original;
+    }
+
+    static void restoreStdout(PrintStream original) {
+        System.setOut(original);
+    }
+}
@@ -0,0 +1,102 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分块并行匹配基准：在不同核数下对比
+ * 1. builtin：OpenCV内部多线程的单次matchTemplate（Core.setNumThreads(n)）
+ * 2. tiled：TiledMatcher分块并行（OpenCV内部单线程，ForkJoinPool并行度n）
+ *
+ * threads为0时使用本机全部核数
+ *
+ * 运行方式：mvn -Pbenchmark compile exec:exec -Djmh.args="TiledMatchBenchmark -p resolution=3840x2160"
+ *
+ * @author yifei
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TiledMatchBenchmark {
+
+    @Param({"1920x1080", "3840x2160"})
+    public String resolution;
+
+    @Param({"120x80"})
+    public String templateSize;
+
+    @Param({"1", "2", "4", "0"})
+    public int threads;
+
+    private Mat target;
+    private Mat template;
+    private Mat response;
+    private ImageMatchConfig config;
+    private int parallelism;
+    private int originalThreads;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (!ImageMatcher.isOpenCVLoaded()) {
+            throw new IllegalStateException("OpenCV库未加载，无法运行基准测试");
+        }
+        int[] screenSize = SyntheticScreens.parseSize(resolution);
+        int[] size = SyntheticScreens.parseSize(templateSize);
+
+        Mat screen = SyntheticScreens.screen(screenSize[0], screenSize[1]);
+        target = new Mat();
+        Imgproc.cvtColor(screen, target, Imgproc.COLOR_BGR2GRAY);
+        screen.release();
+        Rect region = SyntheticScreens.templateRegion(target, size[0], size[1]);
+        template = target.submat(region).clone();
+        response = new Mat();
+
+        parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        config = ImageMatchConfig.getDefaultConfig();
+        config.setTileParallelism(parallelism);
+        originalThreads = Core.getNumThreads();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Core.setNumThreads(originalThreads);
+        response.release();
+        template.release();
+        target.release();
+    }
+
+    @Benchmark
+    public double builtin() {
+        Core.setNumThreads(parallelism);
+        Imgproc.matchTemplate(target, template, response, Imgproc.TM_CCOEFF_NORMED);
+        return Core.minMaxLoc(response).maxVal;
+    }
+
+    @Benchmark
+    public double tiled() {
+        // OpenCV内部单线程，避免与分块并行叠加造成线程过度订阅
+        Core.setNumThreads(1);
+        return TiledMatcher.match(target, template, config, response).score;
+    }
+}
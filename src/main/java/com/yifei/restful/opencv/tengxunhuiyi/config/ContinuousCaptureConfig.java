@@ -0,0 +1,48 @@
+package com.yifei.restful.opencv.tengxunhuiyi.config;
+
+import com.yifei.tools.screenshot.ContinuousCapture;
+import com.yifei.tools.screenshot.ScreenFrameSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * 连续截图配置
+ * opencv.capture.continuous 为true时启动后台截图线程，匹配时直接取环形缓冲区中的最新帧
+ *
+ * @author yifei
+ * @version 1.0
+ */
+@Configuration
+public class ContinuousCaptureConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContinuousCaptureConfig.class);
+
+    @Autowired
+    private ResourceConfig resourceConfig;
+
+    private ContinuousCapture capture;
+
+    @PostConstruct
+    public void start() {
+        ResourceConfig.Capture config = resourceConfig.getCapture();
+        if (!config.isContinuous()) {
+            logger.info("连续截图未启用，匹配时当场截图");
+            return;
+        }
+        capture = ContinuousCapture.start(ScreenFrameSource.INSTANCE, config.getFps(), config.getRingSize());
+        logger.info("连续截图已启动，帧率: {}, 缓冲槽: {}", config.getFps(), config.getRingSize());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (capture != null) {
+            logger.info(capture.getStatistics());
+            capture.stop();
+        }
+    }
+}
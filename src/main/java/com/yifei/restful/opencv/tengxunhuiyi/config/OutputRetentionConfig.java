@@ -0,0 +1,67 @@
+package com.yifei.restful.opencv.tengxunhuiyi.config;
+
+import com.yifei.tools.image.matcher.OutputRetentionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 输出目录保留策略配置
+ * 按 opencv.output 中的大小、数量和时间上限，为截图目录和匹配结果目录分别启动后台清理
+ *
+ * @author yifei
+ * @version 1.0
+ */
+@Configuration
+public class OutputRetentionConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutputRetentionConfig.class);
+
+    @Autowired
+    private ResourceConfig resourceConfig;
+
+    private final List<OutputRetentionManager> managers = new ArrayList<>();
+
+    @PostConstruct
+    public void start() {
+        ResourceConfig.Output output = resourceConfig.getOutput();
+        if (output.getCleanIntervalSeconds() <= 0) {
+            logger.info("输出目录保留策略未启用");
+            return;
+        }
+        if (output.getMaxSizeMb() <= 0 && output.getMaxFiles() <= 0 && output.getMaxAgeHours() <= 0) {
+            logger.warn("输出目录保留策略没有设置任何上限，不会删除文件");
+            return;
+        }
+        startFor(output.getScreenshotDir(), output);
+        startFor(output.getMatchResultDir(), output);
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (OutputRetentionManager manager : managers) {
+            logger.info(manager.getStatistics());
+            manager.stop();
+        }
+        managers.clear();
+    }
+
+    private void startFor(String dir, ResourceConfig.Output output) {
+        if (dir == null || dir.trim().isEmpty()) {
+            return;
+        }
+        managers.add(OutputRetentionManager.start(new File(dir),
+                output.getMaxSizeMb() * 1024 * 1024,
+                output.getMaxFiles(),
+                output.getMaxAgeHours() * 3_600_000L,
+                output.getCleanIntervalSeconds() * 1000L));
+        logger.info("输出目录保留策略已启动: {}", dir);
+    }
+}
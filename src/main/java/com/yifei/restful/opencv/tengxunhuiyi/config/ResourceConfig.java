@@ -23,6 +23,8 @@ public class ResourceConfig {
     private Match match = new Match();
     private Schedule schedule = new Schedule();
     private Output output = new Output();
+    private Metrics metrics = new Metrics();
+    private Capture capture = new Capture();
     
     /**
      * 模板图片路径配置
@@ -31,6 +33,9 @@ public class ResourceConfig {
     public static class Templates {
         private String tengxunHuiyi;
         private String ruhuiButton;
+        // 模板目录和预编译模板包文件（见TemplateBundle），bundle为空时不使用模板包
+        private String dir;
+        private String bundle;
         
         public String getTengxunHuiyi() {
             return tengxunHuiyi;
@@ -47,6 +52,22 @@ public class ResourceConfig {
         public void setRuhuiButton(String ruhuiButton) {
             this.ruhuiButton = ruhuiButton;
         }
+        
+        public String getDir() {
+            return dir;
+        }
+        
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+        
+        public String getBundle() {
+            return bundle;
+        }
+        
+        public void setBundle(String bundle) {
+            this.bundle = bundle;
+        }
     }
     
     /**
@@ -140,6 +161,74 @@ public class ResourceConfig {
         this.output = output;
     }
     
+    public Metrics getMetrics() {
+        return metrics;
+    }
+    
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    public Capture getCapture() {
+        return capture;
+    }
+    
+    public void setCapture(Capture capture) {
+        this.capture = capture;
+    }
+    
+    /**
+     * 截图配置
+     * 所有值从application.yml中读取，不设置默认值
+     */
+    public static class Capture {
+        // 是否启用连续截图（见ContinuousCapture）：后台线程按帧率抓取全屏，匹配时直接取最新帧
+        private boolean continuous;
+        private double fps;
+        private int ringSize;
+        
+        public boolean isContinuous() {
+            return continuous;
+        }
+        
+        public void setContinuous(boolean continuous) {
+            this.continuous = continuous;
+        }
+        
+        public double getFps() {
+            return fps;
+        }
+        
+        public void setFps(double fps) {
+            this.fps = fps;
+        }
+        
+        public int getRingSize() {
+            return ringSize;
+        }
+        
+        public void setRingSize(int ringSize) {
+            this.ringSize = ringSize;
+        }
+    }
+    
+    /**
+     * 指标配置
+     * 所有值从application.yml中读取，不设置默认值
+     */
+    public static class Metrics {
+        // 是否记录图像匹配和截图的分阶段耗时（见StageMetrics），关闭时不产生任何开销
+        private boolean enabled;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+    
     /**
      * 输出目录配置
      * 所有值从application.yml中读取，不设置默认值
@@ -147,6 +236,11 @@ public class ResourceConfig {
     public static class Output {
         private String screenshotDir;
         private String matchResultDir;
+        // 输出目录保留策略（见OutputRetentionManager），每个目录分别生效，0表示不限
+        private long maxSizeMb;
+        private int maxFiles;
+        private long maxAgeHours;
+        private long cleanIntervalSeconds;
         
         public String getScreenshotDir() {
             return screenshotDir;
@@ -163,5 +257,37 @@ public class ResourceConfig {
         public void setMatchResultDir(String matchResultDir) {
             this.matchResultDir = matchResultDir;
         }
+        
+        public long getMaxSizeMb() {
+            return maxSizeMb;
+        }
+        
+        public void setMaxSizeMb(long maxSizeMb) {
+            this.maxSizeMb = maxSizeMb;
+        }
+        
+        public int getMaxFiles() {
+            return maxFiles;
+        }
+        
+        public void setMaxFiles(int maxFiles) {
+            this.maxFiles = maxFiles;
+        }
+        
+        public long getMaxAgeHours() {
+            return maxAgeHours;
+        }
+        
+        public void setMaxAgeHours(long maxAgeHours) {
+            this.maxAgeHours = maxAgeHours;
+        }
+        
+        public long getCleanIntervalSeconds() {
+            return cleanIntervalSeconds;
+        }
+        
+        public void setCleanIntervalSeconds(long cleanIntervalSeconds) {
+            this.cleanIntervalSeconds = cleanIntervalSeconds;
+        }
     }
 }
@@ -0,0 +1,52 @@
+package com.yifei.restful.opencv.tengxunhuiyi.config;
+
+import com.yifei.tools.screenshot.SharedCapture;
+import com.yifei.tools.utils.StageMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * 分阶段耗时统计配置
+ * opencv.metrics.enabled 为true时把Spring的MeterRegistry绑定到 {@link StageMetrics}，
+ * 各阶段耗时即可通过 /actuator/metrics/image.matcher.stage 和 /actuator/prometheus 查看；
+ * 合并截图的请求数和合并比例见 screenshot.coalesce、screenshot.coalesce.ratio
+ *
+ * @author yifei
+ * @version 1.0
+ */
+@Configuration
+public class StageMetricsConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(StageMetricsConfig.class);
+
+    @Autowired
+    private ResourceConfig resourceConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void bind() {
+        if (!resourceConfig.getMetrics().isEnabled()) {
+            logger.info("分阶段耗时统计未启用");
+            return;
+        }
+        StageMetrics.bind(meterRegistry);
+        Gauge.builder(StageMetrics.COALESCE_METRIC + ".ratio", SharedCapture::getCoalescingRatio)
+                .description("合并截图比例：共用其它调用截图的请求占比")
+                .register(meterRegistry);
+        logger.info("分阶段耗时统计已启用: {}, {}", StageMetrics.MATCH_METRIC, StageMetrics.CAPTURE_METRIC);
+    }
+
+    @PreDestroy
+    public void unbind() {
+        StageMetrics.unbind();
+    }
+}
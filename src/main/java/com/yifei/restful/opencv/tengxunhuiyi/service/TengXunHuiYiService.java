@@ -4,6 +4,8 @@ import com.yifei.restful.opencv.tengxunhuiyi.config.ResourceConfig;
 import com.yifei.tools.image.matcher.ImageMatcher;
 import com.yifei.tools.image.matcher.ImageMatchConfig;
 import com.yifei.tools.image.matcher.MatchResult;
+import com.yifei.tools.image.matcher.TemplateBundle;
+import com.yifei.tools.image.matcher.TemplateCache;
 import com.yifei.tools.windows.MouseUtil;
 import com.yifei.tools.windows.WindowsUtil;
 import org.slf4j.Logger;
@@ -16,6 +18,8 @@ import org.springframework.stereotype.Service;
 import javax.annotation.PostConstruct;
 import java.awt.Point;
 import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
 
 /**
  * 腾讯会议自动入会服务
@@ -30,6 +34,16 @@ public class TengXunHuiYiService {
     
     private static final Logger logger = LoggerFactory.getLogger(TengXunHuiYiService.class);
     
+    // 以下时间只作为等待上限：元素一出现/消失就继续，不再固定等待
+    // 回到桌面后图标出现的等待上限（原固定等待2秒）
+    private static final long DESKTOP_SETTLE_MILLIS = 2000;
+    // 软件启动到入会按钮出现的等待上限（原固定等待10秒，另加waitSeconds）
+    private static final long APP_STARTUP_MILLIS = 10000;
+    // 每次重试对应的等待时间（原重试间隔2秒），乘以maxRetryTimes计入等待上限
+    private static final long RETRY_INTERVAL_MILLIS = 2000;
+    // 点击入会按钮后确认按钮消失的等待上限
+    private static final long BUTTON_GONE_MILLIS = 5000;
+    
     @Autowired
     private ResourceConfig resourceConfig;
     
@@ -40,6 +54,8 @@ public class TengXunHuiYiService {
     public void init() {
         logger.info("=== 腾讯会议自动入会服务初始化 ===");
         
+        prepareTemplateBundle();
+        
         if (!checkPrerequisites()) {
             logger.error("系统检查失败，服务将不可用");
             return;
@@ -102,9 +118,8 @@ public class TengXunHuiYiService {
             // 第零步：回到Windows桌面
             logger.info("第零步：回到Windows桌面...");
             WindowsUtil.showDesktop();
-            Thread.sleep(2000); // 等待2秒确保桌面显示完成
             
-            // 第一步：查找腾讯会议图标并打开软件
+            // 第一步：等待腾讯会议图标出现并打开软件
             logger.info("第一步：查找腾讯会议图标...");
             boolean iconFound = findAndOpenTengXunHuiYi();
             
@@ -113,16 +128,8 @@ public class TengXunHuiYiService {
                 return;
             }
             
-            // 等待软件启动
-            logger.info("等待腾讯会议软件启动...");
-            Thread.sleep(10000); // 等待10秒让软件完全启动
-            
-            // 第二步：等待软件界面稳定
-            logger.info("第二步：等待软件界面稳定...");
-            Thread.sleep(resourceConfig.getMatch().getWaitSeconds() * 1000);
-            
-            // 第三步：匹配并点击入会按钮
-            logger.info("第三步：查找并点击入会按钮...");
+            // 第二步：等待软件启动、入会按钮出现后点击
+            logger.info("第二步：等待腾讯会议软件启动并点击入会按钮...");
             boolean clickSuccess = findAndClickRuHuiButton();
             
             if (clickSuccess) {
@@ -134,9 +141,6 @@ public class TengXunHuiYiService {
                 logger.error("未能找到或点击入会按钮");
             }
             
-        } catch (InterruptedException e) {
-            logger.error("任务被中断: {}", e.getMessage());
-            Thread.currentThread().interrupt();
         } catch (Exception e) {
             logger.error("任务执行异常: {}", e.getMessage(), e);
         } finally {
@@ -170,16 +174,14 @@ public class TengXunHuiYiService {
         }
         logger.info("✓ 鼠标操作组件已初始化");
         
-        // 检查模板图片是否存在
-        File tengxunTemplate = new File(resourceConfig.getTemplates().getTengxunHuiyi());
-        if (!tengxunTemplate.exists()) {
+        // 检查模板图片是否存在（只部署了模板包时包中有即可）
+        if (!isTemplateAvailable(resourceConfig.getTemplates().getTengxunHuiyi())) {
             logger.error("腾讯会议模板图片不存在: {}", resourceConfig.getTemplates().getTengxunHuiyi());
             return false;
         }
         logger.info("✓ 腾讯会议模板图片存在: {}", resourceConfig.getTemplates().getTengxunHuiyi());
         
-        File ruhuiTemplate = new File(resourceConfig.getTemplates().getRuhuiButton());
-        if (!ruhuiTemplate.exists()) {
+        if (!isTemplateAvailable(resourceConfig.getTemplates().getRuhuiButton())) {
             logger.error("入会按钮模板图片不存在: {}", resourceConfig.getTemplates().getRuhuiButton());
             return false;
         }
@@ -188,128 +190,195 @@ public class TengXunHuiYiService {
         return true;
     }
     
+    /**
+     * 准备预编译模板包：模板包不存在或模板图片有更新时按当前匹配配置重新编译，然后映射安装并预热模板缓存
+     * 之后每次匹配都不再解码PNG，编译或安装失败时回退到直接读取图片
+     */
+    private void prepareTemplateBundle() {
+        String bundlePath = resourceConfig.getTemplates().getBundle();
+        String templateDir = resourceConfig.getTemplates().getDir();
+        if (bundlePath == null || bundlePath.isEmpty() || templateDir == null || templateDir.isEmpty()) {
+            return;
+        }
+        
+        File bundleFile = new File(bundlePath);
+        try {
+            if (new File(templateDir).isDirectory() && !TemplateBundle.isUpToDate(new File(templateDir), bundleFile)) {
+                long start = System.currentTimeMillis();
+                int count = TemplateBundle.compile(new File(templateDir), bundleFile, 
+                                                   Collections.singletonList(createMatchConfig()));
+                logger.info("模板包已编译: {}，条目数: {}，耗时: {}ms", bundlePath, count, System.currentTimeMillis() - start);
+            }
+            if (!bundleFile.isFile()) {
+                logger.warn("模板包不存在，直接读取模板图片: {}", bundlePath);
+                return;
+            }
+            
+            long start = System.currentTimeMillis();
+            TemplateBundle.install(bundleFile, new File(templateDir));
+            ImageMatchConfig config = createMatchConfig();
+            for (String templatePath : new String[]{resourceConfig.getTemplates().getTengxunHuiyi(), 
+                                                    resourceConfig.getTemplates().getRuhuiButton()}) {
+                TemplateCache.CachedTemplate cached = TemplateCache.acquire(templatePath, config);
+                if (cached != null) {
+                    cached.close();
+                }
+            }
+            logger.info("✓ 模板包已加载: {}，耗时: {}ms", bundlePath, System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            logger.warn("模板包不可用，直接读取模板图片: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 模板图片存在，或已安装的模板包中包含该模板
+     */
+    private boolean isTemplateAvailable(String templatePath) {
+        if (new File(templatePath).exists()) {
+            return true;
+        }
+        TemplateBundle bundle = TemplateBundle.getInstalled();
+        return bundle != null && bundle.contains(templatePath);
+    }
+    
     /**
      * 查找并打开腾讯会议软件
+     * 图标一出现就双击，最长等待回到桌面的时间加上全部重试时间
      * 
      * @return 是否成功打开
      */
     private boolean findAndOpenTengXunHuiYi() {
-        ImageMatchConfig config = createMatchConfig();
+        String template = resourceConfig.getTemplates().getTengxunHuiyi();
+        long timeoutMillis = DESKTOP_SETTLE_MILLIS + retryBudgetMillis();
         
-        for (int attempt = 1; attempt <= resourceConfig.getMatch().getMaxRetryTimes(); attempt++) {
-            logger.info("尝试查找腾讯会议图标 (第{}/{}次)", attempt, resourceConfig.getMatch().getMaxRetryTimes());
-            
-            MatchResult result = ImageMatcher.matchImage(resourceConfig.getTemplates().getTengxunHuiyi(), config);
-            
-            if (result.isMatched()) {
-                logger.info("✓ 成功找到腾讯会议图标");
-                logger.info("  位置: ({}, {})", result.getLocation().x, result.getLocation().y);
-                logger.info("  置信度: {}", String.format("%.4f", result.getConfidence()));
-                
-                // 获取图标中心点
-                Point centerPoint = result.getCenterPoint();
-                if (centerPoint != null) {
-                    logger.info("  中心点: ({}, {})", centerPoint.x, centerPoint.y);
-                    
-                    // 平滑移动鼠标到图标位置
-                    logger.info("正在移动鼠标到腾讯会议图标...");
-                    MouseUtil.smoothMoveTo(centerPoint.x, centerPoint.y);
-                    
-                    // 短暂延迟确保鼠标到位
-                    try {
-                        Thread.sleep(500);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                    
-                    // 双击打开软件
-                    logger.info("正在双击打开腾讯会议软件...");
-                    MouseUtil.doubleClick();
-                    
-                    logger.info("✓ 已成功双击腾讯会议图标");
-                    return true;
-                } else {
-                    logger.error("✗ 无法获取图标中心点");
-                }
-            } else {
-                logger.warn("✗ 未找到腾讯会议图标 (置信度: {})", 
-                           String.format("%.4f", result.getConfidence()));
-                
-                if (attempt < resourceConfig.getMatch().getMaxRetryTimes()) {
-                    try {
-                        logger.info("等待2秒后重试...");
-                        Thread.sleep(2000);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        return false;
-                    }
-                }
-            }
+        logger.info("等待腾讯会议图标出现 (最长{}秒)", timeoutMillis / 1000);
+        MatchResult result = waitUntilAppears(template, timeoutMillis);
+        
+        if (!result.isMatched()) {
+            logger.warn("✗ 未找到腾讯会议图标 (置信度: {})", String.format("%.4f", result.getConfidence()));
+            return false;
+        }
+        
+        logger.info("✓ 成功找到腾讯会议图标");
+        logger.info("  位置: ({}, {})", result.getLocation().x, result.getLocation().y);
+        logger.info("  置信度: {}", String.format("%.4f", result.getConfidence()));
+        
+        // 获取图标中心点
+        Point centerPoint = result.getCenterPoint();
+        if (centerPoint == null) {
+            logger.error("✗ 无法获取图标中心点");
+            return false;
         }
+        logger.info("  中心点: ({}, {})", centerPoint.x, centerPoint.y);
+        
+        // 平滑移动鼠标到图标位置
+        logger.info("正在移动鼠标到腾讯会议图标...");
+        MouseUtil.smoothMoveTo(centerPoint.x, centerPoint.y);
         
-        return false;
+        // 短暂延迟确保鼠标到位
+        try {
+            Thread.sleep(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        // 双击打开软件
+        logger.info("正在双击打开腾讯会议软件...");
+        MouseUtil.doubleClick();
+        
+        logger.info("✓ 已成功双击腾讯会议图标");
+        return true;
     }
     
     /**
      * 查找并点击入会按钮
+     * 按钮一出现就点击，最长等待软件启动时间、界面稳定时间（waitSeconds）加上全部重试时间；
+     * 点击后等待按钮消失以确认已入会
      * 
      * @return 是否成功点击
      */
     private boolean findAndClickRuHuiButton() {
-        ImageMatchConfig config = createMatchConfig();
+        String template = resourceConfig.getTemplates().getRuhuiButton();
+        long timeoutMillis = APP_STARTUP_MILLIS + resourceConfig.getMatch().getWaitSeconds() * 1000L 
+                + retryBudgetMillis();
         
-        for (int attempt = 1; attempt <= resourceConfig.getMatch().getMaxRetryTimes(); attempt++) {
-            logger.info("尝试查找入会按钮 (第{}/{}次)", attempt, resourceConfig.getMatch().getMaxRetryTimes());
-            
-            MatchResult result = ImageMatcher.matchImage(resourceConfig.getTemplates().getRuhuiButton(), config);
-            
-            if (result.isMatched()) {
-                logger.info("✓ 成功找到入会按钮");
-                logger.info("  位置: ({}, {})", result.getLocation().x, result.getLocation().y);
-                logger.info("  置信度: {}", String.format("%.4f", result.getConfidence()));
-                
-                // 获取按钮中心点
-                Point centerPoint = result.getCenterPoint();
-                if (centerPoint != null) {
-                    logger.info("  中心点: ({}, {})", centerPoint.x, centerPoint.y);
-                    
-                    // 平滑移动鼠标到按钮中心并点击
-                    logger.info("正在移动鼠标到按钮位置...");
-                    MouseUtil.smoothMoveTo(centerPoint.x, centerPoint.y);
-                    
-                    // 短暂延迟确保鼠标到位
-                    try {
-                        Thread.sleep(500);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                    
-                    // 执行点击
-                    logger.info("正在点击入会按钮...");
-                    MouseUtil.leftClick();
-                    
-                    logger.info("✓ 已成功点击入会按钮");
-                    return true;
-                } else {
-                    logger.error("✗ 无法获取按钮中心点");
-                }
-            } else {
-                logger.warn("✗ 未找到入会按钮 (置信度: {})", 
-                           String.format("%.4f", result.getConfidence()));
-                
-                if (attempt < resourceConfig.getMatch().getMaxRetryTimes()) {
-                    try {
-                        logger.info("等待2秒后重试...");
-                        Thread.sleep(2000);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        return false;
-                    }
-                }
-            }
+        logger.info("等待入会按钮出现 (最长{}秒)", timeoutMillis / 1000);
+        MatchResult result = waitUntilAppears(template, timeoutMillis);
+        
+        if (!result.isMatched()) {
+            logger.warn("✗ 未找到入会按钮 (置信度: {})", String.format("%.4f", result.getConfidence()));
+            return false;
+        }
+        
+        logger.info("✓ 成功找到入会按钮");
+        logger.info("  位置: ({}, {})", result.getLocation().x, result.getLocation().y);
+        logger.info("  置信度: {}", String.format("%.4f", result.getConfidence()));
+        
+        // 获取按钮中心点
+        Point centerPoint = result.getCenterPoint();
+        if (centerPoint == null) {
+            logger.error("✗ 无法获取按钮中心点");
+            return false;
         }
+        logger.info("  中心点: ({}, {})", centerPoint.x, centerPoint.y);
         
-        return false;
+        // 平滑移动鼠标到按钮中心并点击
+        logger.info("正在移动鼠标到按钮位置...");
+        MouseUtil.smoothMoveTo(centerPoint.x, centerPoint.y);
+        
+        // 短暂延迟确保鼠标到位
+        try {
+            Thread.sleep(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        // 执行点击
+        logger.info("正在点击入会按钮...");
+        MouseUtil.leftClick();
+        logger.info("✓ 已成功点击入会按钮");
+        
+        // 确认按钮消失（进入会议界面）
+        if (ImageMatcher.waitUntilGone(template, createMatchConfig(), BUTTON_GONE_MILLIS)) {
+            logger.info("✓ 入会按钮已消失，已进入会议");
+        } else {
+            logger.warn("入会按钮在{}秒内未消失，请确认是否已入会", BUTTON_GONE_MILLIS / 1000);
+        }
+        return true;
+    }
+    
+    /**
+     * 等待模板出现
+     * 轮询只用模板匹配，每次未匹配都跑特征点匹配开销太大；超时后再用特征点匹配兜底一次，
+     * 应对系统显示缩放或主题变化导致模板匹配失效的情况
+     * 
+     * @param template 模板图片路径
+     * @param timeoutMillis 超时时间（毫秒）
+     * @return 匹配结果
+     */
+    private MatchResult waitUntilAppears(String template, long timeoutMillis) {
+        MatchResult result = ImageMatcher.waitUntilAppears(template, createMatchConfig(), timeoutMillis);
+        if (result.isMatched() || Thread.currentThread().isInterrupted()) {
+            return result;
+        }
+        
+        ImageMatchConfig fallbackConfig = createMatchConfig();
+        fallbackConfig.setMatchMode(ImageMatchConfig.MATCH_MODE_FEATURE);
+        MatchResult fallback = ImageMatcher.matchImage(template, fallbackConfig);
+        if (fallback.isMatched()) {
+            logger.info("模板匹配未成功，特征点匹配找到: {}", template);
+            return fallback;
+        }
+        return result;
+    }
+    
+    /**
+     * 全部重试对应的等待时间（原来每次重试间隔2秒）
+     * 
+     * @return 毫秒数
+     */
+    private long retryBudgetMillis() {
+        return resourceConfig.getMatch().getMaxRetryTimes() * RETRY_INTERVAL_MILLIS;
     }
     
     /**
@@ -319,6 +388,7 @@ public class TengXunHuiYiService {
      */
     private ImageMatchConfig createMatchConfig() {
         ImageMatchConfig config = new ImageMatchConfig();
+        config.setProfile("tengxunhuiyi");
         config.setThreshold(resourceConfig.getMatch().getThreshold());
         config.setEnableGrayscale(true);
         config.setEnableGaussianBlur(true);
@@ -326,8 +396,20 @@ public class TengXunHuiYiService {
         config.setGaussianSigmaX(0.8);
         config.setGaussianSigmaY(0.8);
         
-        // 可选：保存匹配过程图片用于调试
+        // 优先在上次找到的位置附近搜索，找不到再全屏搜索
+        config.setEnableLocationHint(true);
+        
+        // 等待界面变化时画面没有变化就复用上次的匹配结果，空闲轮询只剩截图开销
+        config.setEnableFrameDiffGate(true);
+        
+        // 轮询只用模板匹配，特征点匹配只在等待超时后兜底一次（见waitUntilAppears）
+        config.setMatchMode(ImageMatchConfig.MATCH_MODE_TEMPLATE);
+        
+        // 可选：保存匹配过程图片用于调试（后台写入，只保存阈值附近差一点匹配上的，等待界面时的大量未匹配不保存）
         config.setSaveProcessImages(true);
+        config.setDebugSamplePolicy(ImageMatchConfig.DEBUG_SAMPLE_CONFIDENCE_BAND);
+        config.setDebugConfidenceMin(0.5);
+        config.setDebugConfidenceMax(resourceConfig.getMatch().getThreshold());
         config.setOutputDir(resourceConfig.getOutput().getMatchResultDir());
         
         return config;
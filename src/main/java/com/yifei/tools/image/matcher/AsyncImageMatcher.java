@@ -0,0 +1,312 @@
+package com.yifei.tools.image.matcher;
+
+import java.awt.Rectangle;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 异步图像匹配
+ * 在专用的有界线程池中执行 {@link ImageMatcher} 的匹配方法，返回CompletableFuture，
+ * 调用方（例如定时任务线程）不再阻塞在截图、预处理和匹配上，多个自动化流程可以共用一个进程
+ *
+ * 队列满时按 {@link RejectionPolicy} 处理；对返回的Future调用 cancel 后，排队中的任务直接移出队列，
+ * 正在执行的任务在下一个阶段边界（截图、预处理、匹配、回退搜索之间）停止
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class AsyncImageMatcher {
+
+    /**
+     * 队列已满时的处理策略
+     */
+    public enum RejectionPolicy {
+        /** 新任务的Future以RejectedExecutionException异常完成 */
+        ABORT,
+        /** 在提交线程上同步执行（会阻塞提交线程） */
+        CALLER_RUNS,
+        /** 丢弃队列中最早的任务（其Future以RejectedExecutionException异常完成），再放入新任务 */
+        DISCARD_OLDEST
+    }
+
+    // 默认线程数：2到4个，截图和matchTemplate本身也会占用多核
+    private static final int DEFAULT_POOL_SIZE = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 32;
+
+    private static volatile ThreadPoolExecutor executor;
+    private static volatile RejectionPolicy rejectionPolicy = RejectionPolicy.ABORT;
+
+    private static final AtomicLong submittedCount = new AtomicLong();
+    private static final AtomicLong completedCount = new AtomicLong();
+    private static final AtomicLong rejectedCount = new AtomicLong();
+    private static final AtomicLong cancelledCount = new AtomicLong();
+
+    /**
+     * 配置线程池，已有的线程池会在执行完已提交的任务后关闭
+     *
+     * @param poolSize 线程数
+     * @param queueCapacity 等待队列容量
+     * @param policy 队列满时的处理策略
+     */
+    public static synchronized void configure(int poolSize, int queueCapacity, RejectionPolicy policy) {
+        if (poolSize <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("线程数和队列容量必须大于0");
+        }
+        ThreadPoolExecutor previous = executor;
+        rejectionPolicy = policy;
+        executor = createExecutor(poolSize, queueCapacity);
+        if (previous != null) {
+            previous.shutdown();
+        }
+        System.out.println("异步匹配线程池 - 线程数: " + poolSize + ", 队列容量: " + queueCapacity + ", 拒绝策略: " + policy);
+    }
+
+    /**
+     * 异步全屏匹配
+     *
+     * @param templatePath 模板图片路径
+     * @param config 匹配配置
+     * @return 匹配结果的Future
+     */
+    public static CompletableFuture<MatchResult> matchImageAsync(String templatePath, ImageMatchConfig config) {
+        return submit(() -> ImageMatcher.matchImage(templatePath, config));
+    }
+
+    /**
+     * 异步区域匹配
+     *
+     * @param templatePath 模板图片路径
+     * @param searchArea 搜索区域
+     * @param config 匹配配置
+     * @return 匹配结果的Future
+     */
+    public static CompletableFuture<MatchResult> matchImageInAreaAsync(String templatePath, Rectangle searchArea,
+                                                                       ImageMatchConfig config) {
+        return submit(() -> ImageMatcher.matchImageInArea(templatePath, searchArea, config));
+    }
+
+    /**
+     * 异步等待模板出现
+     *
+     * @param templatePath 模板图片路径
+     * @param config 匹配配置
+     * @param timeoutMillis 超时时间（毫秒）
+     * @return 匹配结果的Future，超时时结果的isMatched为false
+     */
+    public static CompletableFuture<MatchResult> waitUntilAppearsAsync(String templatePath, ImageMatchConfig config,
+                                                                       long timeoutMillis) {
+        return submit(() -> ImageMatcher.waitUntilAppears(templatePath, config, timeoutMillis));
+    }
+
+    /**
+     * 异步等待模板消失
+     *
+     * @param templatePath 模板图片路径
+     * @param config 匹配配置
+     * @param timeoutMillis 超时时间（毫秒）
+     * @return 是否已消失的Future
+     */
+    public static CompletableFuture<Boolean> waitUntilGoneAsync(String templatePath, ImageMatchConfig config,
+                                                                long timeoutMillis) {
+        return submit(() -> ImageMatcher.waitUntilGone(templatePath, config, timeoutMillis));
+    }
+
+    /**
+     * 异步单帧批量匹配
+     *
+     * @param templatePaths 模板图片路径列表
+     * @param config 匹配配置
+     * @return 模板路径到匹配结果映射的Future
+     */
+    public static CompletableFuture<Map<String, MatchResult>> matchAllAsync(List<String> templatePaths,
+                                                                           ImageMatchConfig config) {
+        return submit(() -> ImageMatcher.matchAll(templatePaths, config));
+    }
+
+    /**
+     * 异步多目标查找
+     *
+     * @param templatePath 模板图片路径
+     * @param config 匹配配置
+     * @param maxResults 最多返回的结果数
+     * @return 匹配结果列表的Future
+     */
+    public static CompletableFuture<List<MatchResult>> findAllAsync(String templatePath, ImageMatchConfig config,
+                                                                    int maxResults) {
+        return submit(() -> ImageMatcher.findAll(templatePath, config, maxResults));
+    }
+
+    /**
+     * 提交任意匹配任务到异步线程池
+     *
+     * @param work 匹配任务
+     * @param <T> 结果类型
+     * @return 结果的Future
+     */
+    public static <T> CompletableFuture<T> submit(Supplier<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ThreadPoolExecutor pool = getExecutor();
+        AsyncTask<T> task = new AsyncTask<>(work, future);
+
+        // 排队中被取消的任务立即移出队列，不占用容量
+        future.whenComplete((value, error) -> {
+            if (future.isCancelled()) {
+                cancelledCount.incrementAndGet();
+                pool.remove(task);
+            }
+        });
+
+        submittedCount.incrementAndGet();
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 关闭线程池（已提交的任务会执行完），之后再提交任务会重新创建默认线程池
+     */
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    public static long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public static long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public static long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public static long getCancelledCount() {
+        return cancelledCount.get();
+    }
+
+    /**
+     * 获取统计信息
+     *
+     * @return 统计信息字符串
+     */
+    public static String getStatistics() {
+        ThreadPoolExecutor pool = executor;
+        return String.format("异步匹配 - 提交: %d, 完成: %d, 拒绝: %d, 取消: %d, 执行中: %d, 排队: %d",
+                getSubmittedCount(), getCompletedCount(), getRejectedCount(), getCancelledCount(),
+                pool == null ? 0 : pool.getActiveCount(), pool == null ? 0 : pool.getQueue().size());
+    }
+
+    private static ThreadPoolExecutor getExecutor() {
+        ThreadPoolExecutor pool = executor;
+        if (pool == null) {
+            synchronized (AsyncImageMatcher.class) {
+                if (executor == null) {
+                    executor = createExecutor(DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+                }
+                pool = executor;
+            }
+        }
+        return pool;
+    }
+
+    private static ThreadPoolExecutor createExecutor(int poolSize, int queueCapacity) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "async-match-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new PolicyHandler());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * 按当前拒绝策略处理队列已满的任务
+     */
+    private static class PolicyHandler implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor pool) {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("异步匹配线程池已关闭");
+            }
+            switch (rejectionPolicy) {
+                case CALLER_RUNS:
+                    runnable.run();
+                    return;
+                case DISCARD_OLDEST:
+                    Runnable oldest = pool.getQueue().poll();
+                    if (oldest instanceof AsyncTask) {
+                        rejectedCount.incrementAndGet();
+                        ((AsyncTask<?>) oldest).future.completeExceptionally(
+                                new RejectedExecutionException("异步匹配队列已满，最早的任务被丢弃"));
+                    }
+                    pool.execute(runnable);
+                    return;
+                case ABORT:
+                default:
+                    int capacity = pool.getQueue().size() + pool.getQueue().remainingCapacity();
+                    throw new RejectedExecutionException("异步匹配队列已满（容量 " + capacity + "）");
+            }
+        }
+    }
+
+    /**
+     * 异步匹配任务：执行期间把Future登记为当前线程的取消令牌
+     */
+    private static class AsyncTask<T> implements Runnable {
+
+        private final Supplier<T> work;
+        private final CompletableFuture<T> future;
+
+        AsyncTask(Supplier<T> work, CompletableFuture<T> future) {
+            this.work = work;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                return;
+            }
+            Future<?> previous = MatchCancellation.enter(future);
+            try {
+                T value = work.get();
+                if (!future.isDone()) {
+                    completedCount.incrementAndGet();
+                }
+                future.complete(value);
+            } catch (CancellationException e) {
+                future.cancel(false);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                MatchCancellation.exit(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 离线批量匹配命令行工具
+ * 用N个模板匹配M张归档截图，用于回归测试和阈值调优：
+ * 截图目录按文件流式遍历，每张截图在工作线程中解码、预处理一次后依次匹配所有模板，
+ * 结果逐张截图追加写入JSON Lines或CSV文件
+ *
+ * 同时处理中的截图数不超过线程数的两倍（已解码的截图不超过线程数），内存占用与截图数量无关；
+ * 不使用屏幕和Robot，可在无显示器的Linux上运行
+ *
+ * 用法：BatchMatchCli &lt;模板目录&gt; &lt;截图目录&gt; [--profile default|highPrecision|fast]
+ *       [--format jsonl|csv] [--output 结果文件] [--threads 线程数] [--threshold 阈值] [--verbose]
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class BatchMatchCli {
+
+    // 进度输出间隔（截图数）
+    private static final int PROGRESS_INTERVAL = 100;
+
+    private static final PrintStream SILENT = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        if (args.length < 2) {
+            printUsage();
+            return;
+        }
+
+        File templateDir = new File(args[0]);
+        File imageDir = new File(args[1]);
+        String profile = "default";
+        String format = "jsonl";
+        String output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Double threshold = null;
+        boolean verbose = false;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--profile":
+                    profile = args[++i];
+                    break;
+                case "--format":
+                    format = args[++i].toLowerCase(Locale.ROOT);
+                    break;
+                case "--output":
+                    output = args[++i];
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--threshold":
+                    threshold = Double.parseDouble(args[++i]);
+                    break;
+                case "--verbose":
+                    verbose = true;
+                    break;
+                default:
+                    System.err.println("未知参数: " + args[i]);
+                    printUsage();
+                    return;
+            }
+        }
+        if (!"jsonl".equals(format) && !"csv".equals(format)) {
+            System.err.println("不支持的输出格式: " + format + "（可选 jsonl、csv）");
+            return;
+        }
+        if (!templateDir.isDirectory() || !imageDir.isDirectory()) {
+            System.err.println("模板目录或截图目录不存在: " + templateDir + ", " + imageDir);
+            return;
+        }
+        if (!ImageMatcher.isOpenCVLoaded()) {
+            System.err.println("OpenCV库未加载，无法进行批量匹配");
+            return;
+        }
+
+        ImageMatchConfig config = ImageMatchConfig.getPresetConfig(profile);
+        if (threshold != null) {
+            config.setThreshold(threshold);
+        }
+        // 离线回放没有上一帧位置，也不保存调试图片
+        config.setEnableLocationHint(false);
+        config.setEnableFrameDiffGate(false);
+        config.setSaveProcessImages(false);
+
+        List<String> templates = listTemplates(templateDir);
+        if (templates.isEmpty()) {
+            System.err.println("模板目录中没有图片: " + templateDir);
+            return;
+        }
+        File outputFile = new File(output != null ? output : "batch_results." + format);
+
+        // 匹配过程的逐步日志对几万次匹配没有意义，且会成为瓶颈
+        PrintStream console = System.out;
+        if (!verbose) {
+            System.setOut(SILENT);
+        }
+        try {
+            run(templates, imageDir.toPath(), config, format, outputFile, Math.max(1, threads), console);
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("用法: BatchMatchCli <模板目录> <截图目录> [--profile default|highPrecision|fast] "
+                + "[--format jsonl|csv] [--output 结果文件] [--threads 线程数] [--threshold 阈值] [--verbose]");
+    }
+
+    /**
+     * 执行批量匹配
+     */
+    private static void run(List<String> templates, Path imageDir, ImageMatchConfig config, String format,
+                            File outputFile, int threads, PrintStream console) throws IOException, InterruptedException {
+        console.println(String.format("批量匹配 - 模板: %d, 截图目录: %s, 配置: %s, 线程数: %d, 输出: %s",
+                templates.size(), imageDir, config.getProfile(), threads, outputFile));
+
+        File parent = outputFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        ExecutorService pool = createPool(threads);
+        // 同时在处理中的截图数上限：提交前获取许可，处理完归还
+        Semaphore inFlight = new Semaphore(threads * 2);
+        ResultWriter writer = new ResultWriter(Files.newBufferedWriter(outputFile.toPath(), StandardCharsets.UTF_8),
+                "csv".equals(format));
+        AtomicLong imageCount = new AtomicLong();
+        AtomicLong matchedCount = new AtomicLong();
+        AtomicLong failedCount = new AtomicLong();
+        long start = System.nanoTime();
+
+        try (Stream<Path> images = Files.walk(imageDir)) {
+            Iterator<Path> iterator = images
+                    .filter(path -> Files.isRegularFile(path) && TemplateBundle.isImage(path.getFileName().toString()))
+                    .iterator();
+            while (iterator.hasNext()) {
+                Path image = iterator.next();
+                inFlight.acquire();
+                pool.execute(() -> {
+                    try {
+                        if (!matchImage(image.toString(), templates, config, writer, matchedCount)) {
+                            failedCount.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failedCount.incrementAndGet();
+                        System.err.println("匹配截图失败: " + image + " - " + e.getMessage());
+                    } finally {
+                        inFlight.release();
+                        long done = imageCount.incrementAndGet();
+                        if (done % PROGRESS_INTERVAL == 0) {
+                            double seconds = (System.nanoTime() - start) / 1e9;
+                            console.println(String.format("已处理 %d 张截图，%.1f 张/秒", done, done / seconds));
+                        }
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            writer.close();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long images = imageCount.get();
+        console.println(String.format("批量匹配完成 - 截图: %d, 无法读取: %d, 匹配次数: %d, 匹配成功: %d, 耗时: %.2fs, "
+                        + "吞吐: %.1f 张/秒, %.1f 次匹配/秒",
+                images, failedCount.get(), (images - failedCount.get()) * templates.size(), matchedCount.get(),
+                seconds, images / seconds, (images - failedCount.get()) * templates.size() / seconds));
+        console.println("结果文件: " + outputFile.getAbsolutePath());
+    }
+
+    /**
+     * 在一张截图上匹配所有模板，并把结果写入输出文件
+     *
+     * @return 截图是否读取成功
+     */
+    private static boolean matchImage(String imagePath, List<String> templates, ImageMatchConfig config,
+                                     ResultWriter writer, AtomicLong matchedCount) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        try (ScopedMat target = ScopedMat.of(Imgcodecs.imread(imagePath))) {
+            if (target.get().empty()) {
+                writer.appendError(lines, imagePath, "无法读取图片");
+                writer.write(lines);
+                return false;
+            }
+
+            // 截图只预处理一次，所有模板共用
+            try (ScopedMat processedTarget = ScopedMat.pooled(
+                    ImageMatcher.preprocessImage(target.get(), config, "target"))) {
+                for (String template : templates) {
+                    long start = System.nanoTime();
+                    MatchResult result = ImageMatcher.matchPreparedTarget(template, target.get(),
+                            processedTarget.get(), imagePath, config);
+                    result.setMatchTime((System.nanoTime() - start) / 1_000_000);
+                    if (result.isMatched()) {
+                        matchedCount.incrementAndGet();
+                    }
+                    writer.appendResult(lines, imagePath, template, result);
+                }
+            }
+        }
+        writer.write(lines);
+        return true;
+    }
+
+    private static List<String> listTemplates(File templateDir) throws IOException {
+        List<String> templates = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(templateDir.toPath())) {
+            paths.filter(path -> Files.isRegularFile(path) && TemplateBundle.isImage(path.getFileName().toString()))
+                    .sorted()
+                    .forEach(path -> templates.add(path.toString()));
+        }
+        return templates;
+    }
+
+    private static ExecutorService createPool(int threads) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "batch-cli-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+    }
+
+    /**
+     * 结果输出：每张截图的所有结果行一次性写入，多线程写入时行不会交错
+     */
+    private static class ResultWriter {
+
+        private static final String CSV_HEADER = "image,template,matched,confidence,x,y,width,height,millis,error";
+
+        private final Writer out;
+        private final boolean csv;
+
+        ResultWriter(BufferedWriter out, boolean csv) throws IOException {
+            this.out = out;
+            this.csv = csv;
+            if (csv) {
+                out.write(CSV_HEADER);
+                out.write('\n');
+            }
+        }
+
+        void appendResult(StringBuilder lines, String image, String template, MatchResult result) {
+            int x = result.getMatchArea() != null ? result.getMatchArea().x : -1;
+            int y = result.getMatchArea() != null ? result.getMatchArea().y : -1;
+            int width = result.getMatchArea() != null ? result.getMatchArea().width : 0;
+            int height = result.getMatchArea() != null ? result.getMatchArea().height : 0;
+            String confidence = String.format(Locale.ROOT, "%.6f", result.getConfidence());
+            if (csv) {
+                lines.append(csvField(image)).append(',').append(csvField(template)).append(',')
+                        .append(result.isMatched()).append(',').append(confidence).append(',')
+                        .append(x).append(',').append(y).append(',').append(width).append(',').append(height).append(',')
+                        .append(result.getMatchTime()).append(",\n");
+            } else {
+                lines.append("{\"image\":").append(jsonString(image))
+                        .append(",\"template\":").append(jsonString(template))
+                        .append(",\"matched\":").append(result.isMatched())
+                        .append(",\"confidence\":").append(confidence)
+                        .append(",\"x\":").append(x).append(",\"y\":").append(y)
+                        .append(",\"width\":").append(width).append(",\"height\":").append(height)
+                        .append(",\"millis\":").append(result.getMatchTime())
+                        .append("}\n");
+            }
+        }
+
+        void appendError(StringBuilder lines, String image, String error) {
+            if (csv) {
+                lines.append(csvField(image)).append(",,false,0,-1,-1,0,0,0,").append(csvField(error)).append('\n');
+            } else {
+                lines.append("{\"image\":").append(jsonString(image))
+                        .append(",\"matched\":false,\"error\":").append(jsonString(error)).append("}\n");
+            }
+        }
+
+        synchronized void write(CharSequence lines) throws IOException {
+            out.append(lines);
+        }
+
+        synchronized void close() throws IOException {
+            out.close();
+        }
+
+        private static String csvField(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+
+        private static String jsonString(String value) {
+            StringBuilder escaped = new StringBuilder(value.length() + 2).append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        escaped.append("\\\"");
+                        break;
+                    case '\\':
+                        escaped.append("\\\\");
+                        break;
+                    case '\n':
+                        escaped.append("\\n");
+                        break;
+                    case '\r':
+                        escaped.append("\\r");
+                        break;
+                    case '\t':
+                        escaped.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            escaped.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            escaped.append(c);
+                        }
+                }
+            }
+            return escaped.append('"').toString();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.yifei.tools.image.matcher;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量匹配线程池
+ * 固定大小的有界线程池，队列满时由提交线程自己执行，避免无限堆积任务
+ *
+ * @author yifei
+ * @version 1.0
+ */
+class BatchMatchExecutor {
+
+    // 线程数不超过CPU核数，且最多8个（matchTemplate本身也会占用多核）
+    private static final int POOL_SIZE = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    private static final int QUEUE_CAPACITY = 64;
+
+    private static final ThreadPoolExecutor executor = createExecutor();
+
+    private static ThreadPoolExecutor createExecutor() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "batch-match-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * 提交匹配任务
+     *
+     * @param task 匹配任务
+     * @param <T> 结果类型
+     * @return 任务Future
+     */
+    static <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+}
@@ -0,0 +1,351 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 调试图片后台写入
+ * saveProcessImages 开启时，处理后的模板、目标图像、匹配热力图以及内存截图不再在匹配线程上编码写盘：
+ * 匹配线程只按采样策略决定是否保存、复制像素并放入有界队列，由一个后台线程编码写入
+ *
+ * 每次匹配调用通过 {@link #nextCall()} 取一次调用序号，截图和处理过程图片按同一序号采样。
+ * 队列已满（条数或字节数超过上限）时在复制像素之前就丢弃并计数，匹配线程永远不会等待磁盘
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class DebugImageWriter {
+
+    private static final int QUEUE_CAPACITY = 16;
+
+    // 排队中的像素数据上限，4K三通道截图约25MB
+    private static final long MAX_QUEUED_BYTES = 256L * 1024 * 1024;
+
+    private static final BlockingQueue<Job> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicLong queuedBytes = new AtomicLong();
+
+    private static final AtomicLong callCount = new AtomicLong();
+    private static final AtomicLong sampledCount = new AtomicLong();
+    private static final AtomicLong writtenCount = new AtomicLong();
+    private static final AtomicLong droppedCount = new AtomicLong();
+    private static final AtomicLong failedCount = new AtomicLong();
+
+    private static volatile Thread writerThread;
+
+    /**
+     * 为一次匹配调用分配调用序号（每隔N次采样按该序号判断）
+     *
+     * @return 调用序号，从1开始
+     */
+    static long nextCall() {
+        return callCount.incrementAndGet();
+    }
+
+    /**
+     * 按采样策略判断本次匹配是否保存处理过程图片
+     *
+     * @param result 匹配结果
+     * @param config 匹配配置
+     * @param call 截图时分配的调用序号，没有时传0（此时新分配一个）
+     * @return 是否保存
+     */
+    static boolean shouldSample(MatchResult result, ImageMatchConfig config, long call) {
+        if (call <= 0) {
+            call = nextCall();
+        }
+        switch (config.getDebugSamplePolicy()) {
+            case ImageMatchConfig.DEBUG_SAMPLE_EVERY_NTH:
+                return call % Math.max(1, config.getDebugSampleInterval()) == 0;
+            case ImageMatchConfig.DEBUG_SAMPLE_FAILURES:
+                return !result.isMatched();
+            case ImageMatchConfig.DEBUG_SAMPLE_CONFIDENCE_BAND:
+                return result.getConfidence() >= config.getDebugConfidenceMin()
+                        && result.getConfidence() < config.getDebugConfidenceMax();
+            case ImageMatchConfig.DEBUG_SAMPLE_ALL:
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 内存截图是否在截图时保存（此时还没有匹配结果，只有与结果无关的策略才保存）
+     *
+     * @param config 匹配配置
+     * @param call 本次调用的序号（同一序号随后用于处理过程图片的采样判断）
+     * @return 是否保存
+     */
+    static boolean shouldSaveCapture(ImageMatchConfig config, long call) {
+        switch (config.getDebugSamplePolicy()) {
+            case ImageMatchConfig.DEBUG_SAMPLE_ALL:
+                return true;
+            case ImageMatchConfig.DEBUG_SAMPLE_EVERY_NTH:
+                return call % Math.max(1, config.getDebugSampleInterval()) == 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 提交处理过程图片：处理后的模板、目标图像和归一化的匹配热力图
+     * 像素在调用线程上复制，调用返回后原Mat可以立即复用；队列没有空间时不复制，直接丢弃
+     *
+     * @param template 处理后的模板图像
+     * @param target 处理后的目标图像
+     * @param response 匹配响应图
+     * @param config 匹配配置
+     * @return 输出目录，被丢弃时返回null
+     */
+    static String submitProcessImages(Mat template, Mat target, Mat response, ImageMatchConfig config) {
+        sampledCount.incrementAndGet();
+        long bytes = template.total() * template.elemSize() + target.total() * target.elemSize() + response.total();
+        if (!hasRoom(bytes)) {
+            droppedCount.incrementAndGet();
+            return null;
+        }
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS"));
+        String outputDir = config.getOutputDir() + "/process_" + timestamp;
+        String extension = extension(config);
+
+        Job job = new Job(outputDir, config.getDebugImageFormat(), new File(outputDir));
+        job.add(outputDir + "/processed_template" + extension, template.clone());
+        job.add(outputDir + "/processed_target" + extension, target.clone());
+        if (!response.empty()) {
+            Mat heatmap = new Mat();
+            Core.normalize(response, heatmap, 0, 255, Core.NORM_MINMAX, CvType.CV_8UC1);
+            job.add(outputDir + "/match_heatmap" + extension, heatmap);
+        }
+        return enqueue(job) ? outputDir : null;
+    }
+
+    /**
+     * 提交内存截图
+     *
+     * @param image 截图
+     * @param prefix 文件名前缀
+     * @param config 匹配配置
+     * @return 截图将写入的路径，被丢弃时返回null
+     */
+    static String submitCapture(Mat image, String prefix, ImageMatchConfig config) {
+        if (!hasRoom(image.total() * image.elemSize())) {
+            droppedCount.incrementAndGet();
+            return null;
+        }
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS"));
+        String path = config.getOutputDir() + "/" + prefix + timestamp + extension(config);
+
+        Job job = new Job(config.getOutputDir(), config.getDebugImageFormat(), new File(path));
+        job.add(path, image.clone());
+        return enqueue(job) ? path : null;
+    }
+
+    /**
+     * 等待队列中的图片全部写完（用于退出前或测试）
+     *
+     * @param timeoutMillis 超时时间（毫秒）
+     * @return 是否已全部写完
+     */
+    public static boolean flush(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!queue.isEmpty() || queuedBytes.get() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 复制像素前预先检查队列空间；并发提交时可能仍然放不下，由enqueue最终判断
+     */
+    private static boolean hasRoom(long bytes) {
+        return queue.remainingCapacity() > 0 && queuedBytes.get() + bytes <= MAX_QUEUED_BYTES;
+    }
+
+    private static boolean enqueue(Job job) {
+        long bytes = job.bytes();
+        if (queuedBytes.addAndGet(bytes) > MAX_QUEUED_BYTES || !queue.offer(job)) {
+            queuedBytes.addAndGet(-bytes);
+            droppedCount.incrementAndGet();
+            job.release();
+            return false;
+        }
+        ensureWriterThread();
+        return true;
+    }
+
+    private static void ensureWriterThread() {
+        if (writerThread == null) {
+            synchronized (DebugImageWriter.class) {
+                if (writerThread == null) {
+                    Thread thread = new Thread(DebugImageWriter::writeLoop, "debug-image-writer");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    thread.start();
+                    writerThread = thread;
+                }
+            }
+        }
+    }
+
+    private static void writeLoop() {
+        try {
+            writeLoopUntilInterrupted();
+        } finally {
+            // 线程意外结束时清空引用，下一次enqueue重新启动写入线程
+            synchronized (DebugImageWriter.class) {
+                if (writerThread == Thread.currentThread()) {
+                    writerThread = null;
+                }
+            }
+        }
+    }
+
+    private static void writeLoopUntilInterrupted() {
+        while (true) {
+            Job job;
+            try {
+                job = queue.poll(60, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (job == null) {
+                continue;
+            }
+            try {
+                job.write();
+            } catch (Throwable e) {
+                // 单个任务出错不能结束唯一的写入线程，否则队列写满后所有调试图片都会被静默丢弃
+                failedCount.incrementAndGet();
+                System.err.println("写入调试图片失败: " + job.dir + " - " + e);
+            } finally {
+                queuedBytes.addAndGet(-job.bytes());
+                job.release();
+            }
+        }
+    }
+
+    private static String extension(ImageMatchConfig config) {
+        return "." + config.getDebugImageFormat();
+    }
+
+    public static long getSampledCount() {
+        return sampledCount.get();
+    }
+
+    public static long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public static long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public static long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * 获取统计信息
+     *
+     * @return 统计信息字符串
+     */
+    public static String getStatistics() {
+        return String.format("调试图片写入 - 匹配次数: %d, 采样: %d, 已写入文件: %d, 队列满丢弃: %d, 写入失败: %d, 排队: %d (%.1fMB)",
+                callCount.get(), getSampledCount(), getWrittenCount(), getDroppedCount(), getFailedCount(),
+                queue.size(), queuedBytes.get() / 1024.0 / 1024.0);
+    }
+
+    /**
+     * 一次写入任务：同一目录下的若干图片
+     */
+    private static class Job {
+        private final String dir;
+        private final String format;
+        // 写完后登记到输出目录保留策略的条目（截图文件或process_*目录）
+        private final File entry;
+        private final List<String> paths = new ArrayList<>();
+        private final List<Mat> images = new ArrayList<>();
+        private long bytes;
+
+        Job(String dir, String format, File entry) {
+            this.dir = dir;
+            this.format = format;
+            this.entry = entry;
+        }
+
+        void add(String path, Mat image) {
+            paths.add(path);
+            images.add(image);
+            bytes += image.total() * image.elemSize();
+        }
+
+        long bytes() {
+            return bytes;
+        }
+
+        void write() {
+            File directory = new File(dir);
+            if (!directory.exists()) {
+                directory.mkdirs();
+            }
+            MatOfInt params = encodeParams(format);
+            try {
+                for (int i = 0; i < paths.size(); i++) {
+                    try {
+                        if (Imgcodecs.imwrite(paths.get(i), images.get(i), params)) {
+                            writtenCount.incrementAndGet();
+                        } else {
+                            failedCount.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failedCount.incrementAndGet();
+                        System.err.println("保存调试图片失败: " + paths.get(i) + " - " + e.getMessage());
+                    }
+                }
+            } finally {
+                params.release();
+                OutputRetentionManager.register(entry);
+            }
+        }
+
+        void release() {
+            for (Mat image : images) {
+                image.release();
+            }
+            images.clear();
+        }
+
+        /**
+         * 编码参数：PNG使用最低压缩级别（编码速度约为默认级别的数倍，文件稍大），JPG质量90，BMP不压缩
+         */
+        private static MatOfInt encodeParams(String format) {
+            switch (format) {
+                case "png":
+                    return new MatOfInt(Imgcodecs.IMWRITE_PNG_COMPRESSION, 1);
+                case "jpg":
+                    return new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 90);
+                default:
+                    return new MatOfInt();
+            }
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.DMatch;
+import org.opencv.core.KeyPoint;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDMatch;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Size;
+import org.opencv.features2d.DescriptorMatcher;
+import org.opencv.features2d.ORB;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * ORB特征点匹配
+ * 系统显示缩放或主题变化后，像素模板匹配会失效；特征点匹配对缩放、轻微旋转和颜色变化不敏感，
+ * 通过单应性矩阵（RANSAC）把模板四角投影到截图上得到匹配区域，置信度为RANSAC内点占比
+ *
+ * 模板的关键点和描述子只提取一次并缓存（按路径 + 修改时间 + 特征点数量），
+ * 截图只在传入的目标图像（即搜索区域）内提取特征
+ *
+ * @author yifei
+ * @version 1.0
+ */
+class FeatureMatcher {
+
+    // 最多缓存的模板特征数量
+    private static final int MAX_CACHED_TEMPLATES = 64;
+
+    // 小图标上FAST角点很少，缩小ORB的边缘和采样块尺寸（默认31）
+    private static final int EDGE_THRESHOLD = 15;
+    private static final int PATCH_SIZE = 15;
+
+    // 模板较短边小于该值时先放大再提取特征，否则扣除边缘后几乎没有可用区域
+    private static final int MIN_TEMPLATE_SIDE = 96;
+
+    // RANSAC重投影误差阈值（像素）
+    private static final double RANSAC_REPROJECTION_THRESHOLD = 3.0;
+
+    // 投影区域相对模板的缩放比例合理范围
+    private static final double MIN_SCALE = 0.2;
+    private static final double MAX_SCALE = 5.0;
+
+    private static final Map<String, TemplateFeatures> cache = new LinkedHashMap<String, TemplateFeatures>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TemplateFeatures> eldest) {
+            if (size() > MAX_CACHED_TEMPLATES) {
+                eldest.getValue().descriptors.release();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * 在目标图像中用特征点匹配查找模板
+     *
+     * @param templatePath 模板图片路径
+     * @param target 目标图像（BGR或灰度，即搜索区域）
+     * @param targetPath 目标图像对应的文件路径（仅用于结果记录，可为null）
+     * @param config 匹配配置
+     * @return 匹配结果，confidence为内点占比
+     */
+    static MatchResult match(String templatePath, Mat target, String targetPath, ImageMatchConfig config) {
+        MatchResult result = new MatchResult();
+        result.setTemplatePath(templatePath);
+        result.setScreenshotPath(targetPath);
+
+        TemplateFeatures templateFeatures = getTemplateFeatures(templatePath, config);
+        if (templateFeatures == null) {
+            System.err.println("无法加载模板图片: " + templatePath);
+            return result;
+        }
+
+        try (ScopedMat templateDescriptors = ScopedMat.of(templateFeatures.descriptors);
+             ScopedMat gray = ScopedMat.of(toGray(target));
+             ScopedMat targetDescriptors = ScopedMat.of(new Mat());
+             ScopedMat noMask = ScopedMat.of(new Mat())) {
+            if (templateDescriptors.get().empty()) {
+                System.err.println("模板上没有可用的特征点: " + templatePath);
+                return result;
+            }
+
+            MatOfKeyPoint targetKeyPoints = new MatOfKeyPoint();
+            try {
+                createDetector(config).detectAndCompute(gray.get(), noMask.get(), targetKeyPoints, targetDescriptors.get());
+                if (targetDescriptors.get().rows() < 2) {
+                    System.out.println("特征点匹配失败 - 搜索区域内特征点不足");
+                    return result;
+                }
+
+                MatchCancellation.checkpoint();
+
+                // Lowe比率测试筛选可靠的匹配
+                List<Point> templatePoints = new ArrayList<>();
+                List<Point> targetPoints = new ArrayList<>();
+                collectGoodMatches(templateDescriptors.get(), targetDescriptors.get(), templateFeatures.points,
+                        targetKeyPoints.toArray(), config.getFeatureRatioThreshold(), templatePoints, targetPoints);
+
+                locate(result, templateFeatures, templatePoints, targetPoints, target, config);
+            } finally {
+                targetKeyPoints.release();
+            }
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            System.err.println("特征点匹配异常: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return result;
+    }
+
+    /**
+     * 由筛选后的匹配点估计单应性矩阵并填充匹配结果
+     */
+    private static void locate(MatchResult result, TemplateFeatures templateFeatures, List<Point> templatePoints,
+                               List<Point> targetPoints, Mat target, ImageMatchConfig config) {
+        int goodMatches = templatePoints.size();
+        if (goodMatches < Math.max(4, config.getFeatureMinInliers())) {
+            System.out.println("特征点匹配失败 - 有效匹配点: " + goodMatches + ", 需要: " + config.getFeatureMinInliers());
+            return;
+        }
+
+        MatOfPoint2f source = new MatOfPoint2f();
+        MatOfPoint2f destination = new MatOfPoint2f();
+        MatOfPoint2f corners = new MatOfPoint2f();
+        MatOfPoint2f projected = new MatOfPoint2f();
+        Mat inlierMask = new Mat();
+        Mat homography = null;
+        try {
+            source.fromList(templatePoints);
+            destination.fromList(targetPoints);
+            homography = Calib3d.findHomography(source, destination, Calib3d.RANSAC,
+                    RANSAC_REPROJECTION_THRESHOLD, inlierMask);
+            if (homography.empty()) {
+                System.out.println("特征点匹配失败 - 无法估计单应性矩阵");
+                return;
+            }
+
+            int inliers = Core.countNonZero(inlierMask);
+            double confidence = (double) inliers / goodMatches;
+
+            // 模板四角投影到目标图像
+            double w = templateFeatures.width;
+            double h = templateFeatures.height;
+            corners.fromArray(new Point(0, 0), new Point(w, 0), new Point(w, h), new Point(0, h));
+            Core.perspectiveTransform(corners, projected, homography);
+            Point[] quad = projected.toArray();
+            if (!isPlausible(quad, w, h)) {
+                System.out.println("特征点匹配失败 - 投影区域不合理（内点: " + inliers + "/" + goodMatches + "）");
+                return;
+            }
+
+            java.awt.Rectangle matchArea = boundingBox(quad).intersection(
+                    new java.awt.Rectangle(0, 0, target.cols(), target.rows()));
+            boolean matched = inliers >= config.getFeatureMinInliers()
+                    && confidence >= config.getFeatureInlierRatio()
+                    && !matchArea.isEmpty();
+
+            result.setConfidence(confidence);
+            result.setLocation(new java.awt.Point(matchArea.x, matchArea.y));
+            result.setMatchArea(matchArea);
+            result.setMatched(matched);
+
+            System.out.println("特征点匹配完成 - 内点: " + inliers + "/" + goodMatches
+                    + ", 内点占比: " + String.format("%.4f", confidence)
+                    + ", 阈值: " + config.getFeatureInlierRatio()
+                    + ", 匹配: " + (matched ? "成功" : "失败"));
+        } finally {
+            source.release();
+            destination.release();
+            corners.release();
+            projected.release();
+            inlierMask.release();
+            if (homography != null) {
+                homography.release();
+            }
+        }
+    }
+
+    /**
+     * KNN匹配（k=2）并做Lowe比率测试
+     */
+    private static void collectGoodMatches(Mat templateDescriptors, Mat targetDescriptors, Point[] templateKeyPoints,
+                                           KeyPoint[] targetKeyPoints, double ratio,
+                                           List<Point> templatePoints, List<Point> targetPoints) {
+        DescriptorMatcher matcher = DescriptorMatcher.create(DescriptorMatcher.BRUTEFORCE_HAMMING);
+        List<MatOfDMatch> knnMatches = new ArrayList<>();
+        matcher.knnMatch(templateDescriptors, targetDescriptors, knnMatches, 2);
+        for (MatOfDMatch pair : knnMatches) {
+            DMatch[] candidates = pair.toArray();
+            pair.release();
+            if (candidates.length < 2 || candidates[0].distance >= ratio * candidates[1].distance) {
+                continue;
+            }
+            templatePoints.add(templateKeyPoints[candidates[0].queryIdx]);
+            targetPoints.add(targetKeyPoints[candidates[0].trainIdx].pt);
+        }
+    }
+
+    /**
+     * 检查投影四边形是否为凸四边形且缩放比例在合理范围内
+     */
+    private static boolean isPlausible(Point[] quad, double templateWidth, double templateHeight) {
+        MatOfPoint contour = new MatOfPoint();
+        try {
+            Point[] rounded = new Point[quad.length];
+            for (int i = 0; i < quad.length; i++) {
+                rounded[i] = new Point(Math.round(quad[i].x), Math.round(quad[i].y));
+            }
+            contour.fromArray(rounded);
+            if (!Imgproc.isContourConvex(contour)) {
+                return false;
+            }
+        } finally {
+            contour.release();
+        }
+        double scale = Math.sqrt(Math.abs(polygonArea(quad)) / (templateWidth * templateHeight));
+        return scale >= MIN_SCALE && scale <= MAX_SCALE;
+    }
+
+    private static double polygonArea(Point[] quad) {
+        double area = 0;
+        for (int i = 0; i < quad.length; i++) {
+            Point a = quad[i];
+            Point b = quad[(i + 1) % quad.length];
+            area += a.x * b.y - b.x * a.y;
+        }
+        return area / 2;
+    }
+
+    private static java.awt.Rectangle boundingBox(Point[] quad) {
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (Point p : quad) {
+            minX = Math.min(minX, p.x);
+            minY = Math.min(minY, p.y);
+            maxX = Math.max(maxX, p.x);
+            maxY = Math.max(maxY, p.y);
+        }
+        int x = (int) Math.floor(minX);
+        int y = (int) Math.floor(minY);
+        return new java.awt.Rectangle(x, y, (int) Math.ceil(maxX) - x, (int) Math.ceil(maxY) - y);
+    }
+
+    private static ORB createDetector(ImageMatchConfig config) {
+        return ORB.create(config.getFeatureCount(), 1.2f, 8, EDGE_THRESHOLD, 0, 2,
+                ORB.HARRIS_SCORE, PATCH_SIZE, 20);
+    }
+
+    private static Mat toGray(Mat image) {
+        Mat gray = new Mat();
+        if (image.channels() == 1) {
+            image.copyTo(gray);
+        } else {
+            Imgproc.cvtColor(image, gray, image.channels() == 4 ? Imgproc.COLOR_BGRA2GRAY : Imgproc.COLOR_BGR2GRAY);
+        }
+        return gray;
+    }
+
+    /**
+     * 获取模板特征（命中缓存时不再读取模板图片）
+     * 返回的是在缓存锁内复制的副本，之后缓存淘汰释放原描述子也不影响本次匹配；调用方负责释放副本的描述子
+     *
+     * @param templatePath 模板图片路径
+     * @param config 匹配配置
+     * @return 模板特征副本，无法加载时返回null
+     */
+    private static TemplateFeatures getTemplateFeatures(String templatePath, ImageMatchConfig config) {
+        String key = templatePath + "|" + new File(templatePath).lastModified() + "|" + config.getFeatureCount();
+        synchronized (cache) {
+            TemplateFeatures cached = cache.get(key);
+            if (cached != null) {
+                return cached.copy();
+            }
+        }
+
+        TemplateFeatures extracted = extract(templatePath, config);
+        if (extracted == null) {
+            return null;
+        }
+        synchronized (cache) {
+            TemplateFeatures existing = cache.get(key);
+            if (existing != null) {
+                extracted.descriptors.release();
+                return existing.copy();
+            }
+            cache.put(key, extracted);
+            return extracted.copy();
+        }
+    }
+
+    /**
+     * 读取模板并提取关键点和描述子
+     */
+    private static TemplateFeatures extract(String templatePath, ImageMatchConfig config) {
+        try (ScopedMat template = ScopedMat.of(Imgcodecs.imread(templatePath, Imgcodecs.IMREAD_GRAYSCALE));
+             ScopedMat noMask = ScopedMat.of(new Mat())) {
+            if (template.get().empty()) {
+                return null;
+            }
+            // 小图标放大后提取，关键点坐标再换算回原模板坐标
+            int shortSide = Math.min(template.get().cols(), template.get().rows());
+            double upscale = Math.max(1.0, (double) MIN_TEMPLATE_SIDE / shortSide);
+            if (upscale > 1.0) {
+                Imgproc.resize(template.get(), template.get(), new Size(), upscale, upscale, Imgproc.INTER_CUBIC);
+            }
+
+            MatOfKeyPoint keyPoints = new MatOfKeyPoint();
+            Mat descriptors = new Mat();
+            try {
+                createDetector(config).detectAndCompute(template.get(), noMask.get(), keyPoints, descriptors);
+                KeyPoint[] array = keyPoints.toArray();
+                Point[] points = new Point[array.length];
+                for (int i = 0; i < array.length; i++) {
+                    points[i] = new Point(array[i].pt.x / upscale, array[i].pt.y / upscale);
+                }
+                System.out.println("提取模板特征点: " + templatePath + ", 数量: " + points.length);
+                return new TemplateFeatures(points, descriptors, (int) Math.round(template.get().cols() / upscale),
+                        (int) Math.round(template.get().rows() / upscale));
+            } finally {
+                keyPoints.release();
+            }
+        }
+    }
+
+    /**
+     * 清空模板特征缓存
+     */
+    static void clearCache() {
+        synchronized (cache) {
+            for (TemplateFeatures features : cache.values()) {
+                features.descriptors.release();
+            }
+            cache.clear();
+        }
+    }
+
+    /**
+     * 缓存的模板特征
+     */
+    private static class TemplateFeatures {
+        private final Point[] points;
+        private final Mat descriptors;
+        private final int width;
+        private final int height;
+
+        TemplateFeatures(Point[] points, Mat descriptors, int width, int height) {
+            this.points = points;
+            this.descriptors = descriptors;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * 复制一份供本次匹配使用（关键点坐标不可变，直接共用），调用方需持有缓存锁
+         */
+        TemplateFeatures copy() {
+            Mat copied = descriptors.empty() ? new Mat(0, 32, CvType.CV_8U) : descriptors.clone();
+            return new TemplateFeatures(points, copied, width, height);
+        }
+    }
+}
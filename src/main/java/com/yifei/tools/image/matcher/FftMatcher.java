@@ -0,0 +1,512 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * 频域（FFT）模板匹配
+ * 通过 Core.dft 计算目标与模板的互相关，再用积分图求出每个窗口的和与平方和完成归一化，
+ * 结果与 Imgproc.matchTemplate 的六种匹配方法一致（浮点误差范围内）
+ *
+ * 空间域匹配的计算量随模板面积增长，频域匹配只与目标图像尺寸有关，适合整个对话框这类大模板。
+ * 模板在整屏填充尺寸下的频谱缓存在 {@link TemplateCache.CachedTemplate} 上，重复匹配时只需对目标做一次正变换和一次逆变换
+ *
+ * @author yifei
+ * @version 1.0
+ */
+class FftMatcher {
+
+    // 窗口方差小于该值时视为纯色区域，与OpenCV一样不做除法
+    private static final double EPSILON = 1e-6;
+
+    /**
+     * 频域版的matchTemplate，输出与 Imgproc.matchTemplate 相同尺寸和含义的响应图
+     *
+     * @param target 目标图像（8位或32位浮点，1-4通道）
+     * @param template 模板，通道数与目标相同
+     * @param response 输出：响应图
+     * @param method 匹配方法（Imgproc.TM_*）
+     * @param spectra 模板频谱缓存，可为null
+     */
+    static void matchTemplate(Mat target, Mat template, Mat response, int method, SpectrumCache spectra) {
+        int responseRows = target.rows() - template.rows() + 1;
+        int responseCols = target.cols() - template.cols() + 1;
+        if (responseRows <= 0 || responseCols <= 0) {
+            throw new IllegalArgumentException("模板尺寸大于目标图像");
+        }
+        if (target.channels() != template.channels()) {
+            throw new IllegalArgumentException("模板与目标图像的通道数不一致");
+        }
+
+        int channels = target.channels();
+        int paddedCols = Core.getOptimalDFTSize(target.cols());
+        int paddedRows = Core.getOptimalDFTSize(target.rows());
+        boolean zeroMean = method == Imgproc.TM_CCOEFF || method == Imgproc.TM_CCOEFF_NORMED;
+        boolean needWindowSums = method != Imgproc.TM_CCORR && method != Imgproc.TM_CCOEFF;
+        double area = (double) template.rows() * template.cols();
+
+        SpectrumCache.Lease lease = spectra != null ? spectra.acquire(template, paddedRows, paddedCols, zeroMean) : null;
+        Mat[] templateSpectra = lease != null
+                ? lease.get()
+                : computeSpectra(template, paddedRows, paddedCols, zeroMean);
+        Scalar templateSum = Core.sumElems(template);
+
+        List<Mat> targetChannels = new ArrayList<>(channels);
+        if (channels == 1) {
+            targetChannels.add(target);
+        } else {
+            Core.split(target, targetChannels);
+        }
+
+        try (ScopedMat correlation = ScopedMat.pooled(MatBufferPool.acquire(responseRows, responseCols, CvType.CV_64FC1));
+             ScopedMat windowStat = ScopedMat.pooled(MatBufferPool.acquire(responseRows, responseCols, CvType.CV_64FC1));
+             ScopedMat padded = ScopedMat.pooled(MatBufferPool.acquire(paddedRows, paddedCols, CvType.CV_32FC1));
+             ScopedMat spectrum = ScopedMat.of(new Mat());
+             ScopedMat channelCorrelation = ScopedMat.of(new Mat());
+             ScopedMat sum = ScopedMat.of(new Mat());
+             ScopedMat sqsum = ScopedMat.of(new Mat());
+             ScopedMat windowSum = ScopedMat.pooled(MatBufferPool.acquire(responseRows, responseCols, CvType.CV_64FC1));
+             ScopedMat scratch = ScopedMat.pooled(MatBufferPool.acquire(responseRows, responseCols, CvType.CV_64FC1))) {
+            double templateSqSum = 0;
+            double templateVariance = 0;
+            Rect responseRect = new Rect(0, 0, responseCols, responseRows);
+
+            for (int c = 0; c < channels; c++) {
+                Mat channel = targetChannels.get(c);
+
+                // 互相关：IDFT(DFT(目标) * conj(DFT(模板)))，目标尺寸不超过填充尺寸，有效区域内不会发生循环混叠
+                copyPadded(channel, padded.get(), 0);
+                Core.dft(padded.get(), spectrum.get(), 0, channel.rows());
+                Core.mulSpectrums(spectrum.get(), templateSpectra[c], spectrum.get(), 0, true);
+                Core.dft(spectrum.get(), channelCorrelation.get(),
+                        Core.DFT_INVERSE | Core.DFT_SCALE | Core.DFT_REAL_OUTPUT, responseRows);
+                Mat valid = channelCorrelation.get().submat(responseRect);
+                accumulate(valid, correlation.get(), c == 0, scratch.get());
+                valid.release();
+
+                if (!needWindowSums) {
+                    continue;
+                }
+
+                Mat templateChannel = channels == 1 ? template : extractChannel(template, c);
+                double channelSum = templateSum.val[c];
+                double channelSqSum = templateChannel.dot(templateChannel);
+                if (templateChannel != template) {
+                    templateChannel.release();
+                }
+                templateSqSum += channelSqSum;
+                templateVariance += channelSqSum - channelSum * channelSum / area;
+
+                // 积分图求每个窗口的和与平方和
+                Imgproc.integral2(channel, sum.get(), sqsum.get(), CvType.CV_64F, CvType.CV_64F);
+                windowSums(sqsum.get(), template.cols(), template.rows(), responseRect, windowSum.get());
+                if (zeroMean) {
+                    // 窗口方差 = 平方和 - 和^2 / 面积
+                    windowSums(sum.get(), template.cols(), template.rows(), responseRect, scratch.get());
+                    Core.multiply(scratch.get(), scratch.get(), scratch.get(), 1.0 / area);
+                    Core.subtract(windowSum.get(), scratch.get(), windowSum.get());
+                }
+                accumulate(windowSum.get(), windowStat.get(), c == 0, scratch.get());
+            }
+
+            normalize(correlation.get(), windowStat.get(), method, templateSqSum, templateVariance, scratch.get());
+            correlation.get().convertTo(response, CvType.CV_32F);
+        } finally {
+            if (channels > 1) {
+                for (Mat channel : targetChannels) {
+                    channel.release();
+                }
+            }
+            if (lease != null) {
+                lease.close();
+            } else {
+                for (Mat templateSpectrum : templateSpectra) {
+                    templateSpectrum.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * 将单个通道的结果累加到总结果（第一个通道直接写入）
+     *
+     * @param channelValue 单个通道的结果
+     * @param total 总结果（CV_64FC1）
+     * @param first 是否为第一个通道
+     * @param scratch 临时缓冲区
+     */
+    private static void accumulate(Mat channelValue, Mat total, boolean first, Mat scratch) {
+        if (first) {
+            channelValue.convertTo(total, CvType.CV_64F);
+        } else {
+            channelValue.convertTo(scratch, CvType.CV_64F);
+            Core.add(total, scratch, total);
+        }
+    }
+
+    /**
+     * 根据匹配方法将互相关结果转换为最终得分（原地修改correlation）
+     *
+     * @param correlation 互相关（CCOEFF系列为与零均值模板的互相关）
+     * @param windowStat 窗口平方和（CCOEFF系列为窗口方差×面积）
+     * @param method 匹配方法
+     * @param templateSqSum 模板平方和
+     * @param templateVariance 模板方差×面积
+     * @param scratch 临时缓冲区
+     */
+    private static void normalize(Mat correlation, Mat windowStat, int method,
+                                  double templateSqSum, double templateVariance, Mat scratch) {
+        switch (method) {
+            case Imgproc.TM_CCORR:
+            case Imgproc.TM_CCOEFF:
+                return;
+            case Imgproc.TM_SQDIFF:
+                // 平方差 = 窗口平方和 - 2×互相关 + 模板平方和
+                Core.addWeighted(windowStat, 1.0, correlation, -2.0, templateSqSum, correlation);
+                return;
+            case Imgproc.TM_SQDIFF_NORMED:
+                Core.addWeighted(windowStat, 1.0, correlation, -2.0, templateSqSum, correlation);
+                divideByNorm(correlation, windowStat, templateSqSum, 1.0, scratch);
+                Core.min(correlation, Scalar.all(1), correlation);
+                Core.max(correlation, Scalar.all(0), correlation);
+                return;
+            case Imgproc.TM_CCORR_NORMED:
+                divideByNorm(correlation, windowStat, templateSqSum, 0.0, scratch);
+                Core.min(correlation, Scalar.all(1), correlation);
+                Core.max(correlation, Scalar.all(-1), correlation);
+                return;
+            case Imgproc.TM_CCOEFF_NORMED:
+                if (templateVariance < EPSILON) {
+                    // 纯色模板与任何窗口的相关系数都没有定义，与OpenCV一样返回1
+                    correlation.setTo(Scalar.all(1));
+                    return;
+                }
+                Core.max(windowStat, Scalar.all(0), windowStat);
+                divideByNorm(correlation, windowStat, templateVariance, 0.0, scratch);
+                Core.min(correlation, Scalar.all(1), correlation);
+                Core.max(correlation, Scalar.all(-1), correlation);
+                return;
+            default:
+                throw new IllegalArgumentException("不支持的匹配方法: " + method);
+        }
+    }
+
+    /**
+     * correlation /= sqrt(windowStat × templateStat)，分母过小的位置置为flatValue
+     */
+    private static void divideByNorm(Mat correlation, Mat windowStat, double templateStat, double flatValue,
+                                     Mat scratch) {
+        Core.multiply(windowStat, Scalar.all(templateStat), scratch);
+        Core.sqrt(scratch, scratch);
+        try (ScopedMat flat = ScopedMat.of(new Mat())) {
+            Core.compare(scratch, Scalar.all(EPSILON), flat.get(), Core.CMP_LE);
+            Core.max(scratch, Scalar.all(EPSILON), scratch);
+            Core.divide(correlation, scratch, correlation);
+            correlation.setTo(Scalar.all(flatValue), flat.get());
+        }
+    }
+
+    /**
+     * 由积分图计算每个模板窗口内的和
+     *
+     * @param integral 积分图（比原图多一行一列）
+     * @param templateCols 模板宽度
+     * @param templateRows 模板高度
+     * @param responseRect 响应图范围
+     * @param output 输出：窗口和
+     */
+    private static void windowSums(Mat integral, int templateCols, int templateRows, Rect responseRect, Mat output) {
+        Mat topLeft = integral.submat(responseRect);
+        Mat topRight = integral.submat(new Rect(templateCols, 0, responseRect.width, responseRect.height));
+        Mat bottomLeft = integral.submat(new Rect(0, templateRows, responseRect.width, responseRect.height));
+        Mat bottomRight = integral.submat(new Rect(templateCols, templateRows, responseRect.width, responseRect.height));
+        try {
+            Core.subtract(bottomRight, topRight, output);
+            Core.subtract(output, bottomLeft, output);
+            Core.add(output, topLeft, output);
+        } finally {
+            topLeft.release();
+            topRight.release();
+            bottomLeft.release();
+            bottomRight.release();
+        }
+    }
+
+    /**
+     * 将图像复制到填充缓冲区的左上角并转换为浮点，其余部分清零
+     *
+     * @param source 源图像（单通道）
+     * @param padded 填充缓冲区（CV_32FC1）
+     * @param mean 复制前减去的均值
+     */
+    private static void copyPadded(Mat source, Mat padded, double mean) {
+        Mat roi = padded.submat(new Rect(0, 0, source.cols(), source.rows()));
+        Mat right = padded.submat(new Rect(source.cols(), 0, padded.cols() - source.cols(), padded.rows()));
+        Mat bottom = padded.submat(new Rect(0, source.rows(), source.cols(), padded.rows() - source.rows()));
+        try {
+            source.convertTo(roi, CvType.CV_32F, 1.0, -mean);
+            right.setTo(Scalar.all(0));
+            bottom.setTo(Scalar.all(0));
+        } finally {
+            roi.release();
+            right.release();
+            bottom.release();
+        }
+    }
+
+    private static Mat extractChannel(Mat source, int channel) {
+        Mat output = new Mat();
+        Core.extractChannel(source, output, channel);
+        return output;
+    }
+
+    /**
+     * 计算模板各通道在指定填充尺寸下的频谱
+     *
+     * @param template 模板
+     * @param paddedRows 填充后的行数
+     * @param paddedCols 填充后的列数
+     * @param zeroMean 是否先减去各通道均值（CCOEFF系列）
+     * @return 各通道频谱（CCS打包格式）
+     */
+    private static Mat[] computeSpectra(Mat template, int paddedRows, int paddedCols, boolean zeroMean) {
+        int channels = template.channels();
+        Scalar mean = Core.mean(template);
+        Mat[] result = new Mat[channels];
+        Mat padded = new Mat(paddedRows, paddedCols, CvType.CV_32FC1);
+        try {
+            for (int c = 0; c < channels; c++) {
+                Mat channel = channels == 1 ? template : extractChannel(template, c);
+                copyPadded(channel, padded, zeroMean ? mean.val[c] : 0);
+                if (channel != template) {
+                    channel.release();
+                }
+                result[c] = new Mat();
+                Core.dft(padded, result[c], 0, template.rows());
+            }
+        } finally {
+            padded.release();
+        }
+        return result;
+    }
+
+    /**
+     * 估算空间域匹配的计算量（乘加次数）
+     *
+     * @param targetCols 目标宽度
+     * @param targetRows 目标高度
+     * @param templateCols 模板宽度
+     * @param templateRows 模板高度
+     * @return 估算计算量
+     */
+    static double estimateSpatialCost(int targetCols, int targetRows, int templateCols, int templateRows) {
+        double responseArea = (double) Math.max(0, targetCols - templateCols + 1)
+                * Math.max(0, targetRows - templateRows + 1);
+        return responseArea * templateCols * templateRows;
+    }
+
+    /**
+     * 估算频域匹配的计算量（一次正变换 + 一次逆变换，模板频谱已缓存）
+     *
+     * @param targetCols 目标宽度
+     * @param targetRows 目标高度
+     * @return 估算计算量
+     */
+    static double estimateFftCost(int targetCols, int targetRows) {
+        double n = (double) Core.getOptimalDFTSize(targetCols) * Core.getOptimalDFTSize(targetRows);
+        return 2 * n * (Math.log(n) / Math.log(2));
+    }
+
+    /**
+     * 根据成本模型判断是否使用频域匹配
+     *
+     * @param targetCols 目标宽度
+     * @param targetRows 目标高度
+     * @param templateCols 模板宽度
+     * @param templateRows 模板高度
+     * @param fftCostFactor 频域计算量相对空间域的权重（由JMH基准FftMatchBenchmark标定）
+     * @return 频域更快时返回true
+     */
+    static boolean isFftCheaper(int targetCols, int targetRows, int templateCols, int templateRows,
+                                double fftCostFactor) {
+        return estimateFftCost(targetCols, targetRows) * fftCostFactor
+                < estimateSpatialCost(targetCols, targetRows, templateCols, templateRows);
+    }
+
+    /**
+     * 模板频谱缓存
+     * 挂在缓存模板上，每种模式（是否零均值）只缓存目前见过的最大填充尺寸（通常是整屏）下的频谱。
+     * 提示区域、预筛选区域、指定区域匹配这类更小的目标各自填充尺寸不同，使用临时频谱，用完即释放，
+     * 不会把整屏的频谱挤出缓存
+     *
+     * 频谱通过 {@link Lease} 借出并带引用计数：被替换或模板释放时仍在使用的频谱等最后一个借用者归还后才释放
+     */
+    static class SpectrumCache {
+
+        // 缓存频谱占用的字节数变化（增加为正、释放为负），在缓存锁外回调
+        private final LongConsumer bytesListener;
+        // 下标0为非零均值，1为零均值
+        private final Entry[] entries = new Entry[2];
+
+        SpectrumCache() {
+            this(null);
+        }
+
+        /**
+         * @param bytesListener 缓存频谱占用字节数变化的回调，可为null
+         */
+        SpectrumCache(LongConsumer bytesListener) {
+            this.bytesListener = bytesListener;
+        }
+
+        /**
+         * 借出模板在指定填充尺寸下的频谱，缓存中没有时计算
+         * 借出的频谱在归还前不会被释放，调用方用完后必须关闭
+         */
+        Lease acquire(Mat template, int paddedRows, int paddedCols, boolean zeroMean) {
+            int mode = zeroMean ? 1 : 0;
+            long delta = 0;
+            Lease lease;
+            synchronized (this) {
+                Entry cached = entries[mode];
+                if (cached != null && cached.rows == paddedRows && cached.cols == paddedCols) {
+                    cached.refs++;
+                    return new Lease(this, cached);
+                }
+                Entry computed = new Entry(paddedRows, paddedCols,
+                        computeSpectra(template, paddedRows, paddedCols, zeroMean));
+                computed.refs = 1;
+                if (cached == null || (paddedRows >= cached.rows && paddedCols >= cached.cols)) {
+                    // 更大的目标（整屏）替换缓存
+                    entries[mode] = computed;
+                    delta += computed.bytes;
+                    if (cached != null) {
+                        delta -= cached.bytes;
+                        retire(cached);
+                    }
+                } else {
+                    // 区域匹配的临时频谱，归还时释放
+                    computed.retired = true;
+                }
+                lease = new Lease(this, computed);
+            }
+            notifyBytes(delta);
+            return lease;
+        }
+
+        /**
+         * 释放所有缓存的频谱，仍在借出中的等归还后释放
+         */
+        void release() {
+            long delta = 0;
+            synchronized (this) {
+                for (int i = 0; i < entries.length; i++) {
+                    if (entries[i] != null) {
+                        delta -= entries[i].bytes;
+                        retire(entries[i]);
+                        entries[i] = null;
+                    }
+                }
+            }
+            notifyBytes(delta);
+        }
+
+        /**
+         * 缓存频谱当前占用的字节数
+         */
+        synchronized long getBytes() {
+            long bytes = 0;
+            for (Entry entry : entries) {
+                if (entry != null) {
+                    bytes += entry.bytes;
+                }
+            }
+            return bytes;
+        }
+
+        private void retire(Entry entry) {
+            entry.retired = true;
+            if (entry.refs == 0) {
+                releaseAll(entry.spectra);
+            }
+        }
+
+        private synchronized void giveBack(Entry entry) {
+            if (--entry.refs == 0 && entry.retired) {
+                releaseAll(entry.spectra);
+            }
+        }
+
+        private void notifyBytes(long delta) {
+            if (delta != 0 && bytesListener != null) {
+                bytesListener.accept(delta);
+            }
+        }
+
+        private static void releaseAll(Mat[] spectra) {
+            for (Mat spectrum : spectra) {
+                spectrum.release();
+            }
+        }
+
+        /**
+         * 一种填充尺寸下的各通道频谱
+         */
+        private static class Entry {
+            private final int rows;
+            private final int cols;
+            private final Mat[] spectra;
+            private final long bytes;
+            private int refs;
+            private boolean retired;
+
+            Entry(int rows, int cols, Mat[] spectra) {
+                this.rows = rows;
+                this.cols = cols;
+                this.spectra = spectra;
+                long total = 0;
+                for (Mat spectrum : spectra) {
+                    total += spectrum.total() * spectrum.elemSize();
+                }
+                this.bytes = total;
+            }
+        }
+
+        /**
+         * 借出的频谱，关闭时归还
+         */
+        static class Lease implements AutoCloseable {
+            private final SpectrumCache owner;
+            private final Entry entry;
+            private boolean closed;
+
+            private Lease(SpectrumCache owner, Entry entry) {
+                this.owner = owner;
+                this.entry = entry;
+            }
+
+            /**
+             * 各通道频谱（CCS打包格式），只在关闭前有效，不得释放或修改
+             */
+            Mat[] get() {
+                return entry.spectra;
+            }
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    owner.giveBack(entry);
+                }
+            }
+        }
+    }
+}
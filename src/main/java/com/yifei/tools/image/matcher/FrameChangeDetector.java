@@ -0,0 +1,456 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Mat;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 帧差门控
+ * 把每次截取的画面切成固定大小的图块并计算哈希，与同一截图区域的上一帧逐块比较：
+ * 没有任何图块变化时画面的"版本号"保持不变，模板在该版本上已有的匹配结果直接复用，
+ * 跳过图像转换、预处理和匹配；桌面空闲时轮询只剩截图和哈希的开销
+ *
+ * 截图区域（全屏或指定区域）各自维护一份图块哈希，缓存的结果绑定到模板文件、截图区域和影响匹配结果的配置值
+ * （同一个配置对象修改阈值等设置后不会拿到旧结果，每次新建的相同配置也能命中）
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class FrameChangeDetector {
+
+    // 最多跟踪的截图区域数和缓存的匹配结果数（位置记忆会产生多个不同的区域）
+    private static final int MAX_AREAS = 64;
+    private static final int MAX_RESULTS = 256;
+
+    private static final String FULL_SCREEN_KEY = "screen";
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final LinkedHashMap<String, FrameState> frames = new LinkedHashMap<>(16, 0.75f, true);
+    private static final LinkedHashMap<String, CachedResult> results = new LinkedHashMap<>(16, 0.75f, true);
+
+    // 全局递增的版本号，保证不同区域、清空前后的版本号互不相同
+    private static final AtomicLong generationSequence = new AtomicLong();
+
+    // 每个线程复用的像素缓冲区（Mat来源的帧）
+    private static final ThreadLocal<byte[]> pixelBuffers = new ThreadLocal<>();
+
+    private static final AtomicLong frameCount = new AtomicLong();
+    private static final AtomicLong changedFrameCount = new AtomicLong();
+    private static final AtomicLong changedTileCount = new AtomicLong();
+    private static final AtomicLong skippedMatchCount = new AtomicLong();
+    private static final AtomicLong executedMatchCount = new AtomicLong();
+    private static final AtomicLong hashTotalNanos = new AtomicLong();
+
+    /**
+     * 记录一帧内存截图，返回该区域当前的画面版本号
+     *
+     * @param searchArea 截图区域，全屏时为null
+     * @param image 截图
+     * @param tileSize 图块边长（像素）
+     * @return 画面版本号
+     */
+    static long observe(Rectangle searchArea, BufferedImage image, int tileSize) {
+        long start = System.nanoTime();
+        long[] hashes = hashTiles(image, tileSize);
+        return update(areaKey(searchArea), image.getWidth(), image.getHeight(), tileSize, hashes, start);
+    }
+
+    /**
+     * 记录一帧从文件读取的截图（BGR Mat），返回该区域当前的画面版本号
+     *
+     * @param searchArea 截图区域，全屏时为null
+     * @param image 截图
+     * @param tileSize 图块边长（像素）
+     * @return 画面版本号
+     */
+    static long observe(Rectangle searchArea, Mat image, int tileSize) {
+        long start = System.nanoTime();
+        long[] hashes = hashTiles(image, tileSize);
+        return update(areaKey(searchArea), image.cols(), image.rows(), tileSize, hashes, start);
+    }
+
+    /**
+     * 查找模板在指定画面版本上的匹配结果
+     *
+     * @param templatePath 模板图片路径
+     * @param searchArea 截图区域，全屏时为null
+     * @param config 匹配配置
+     * @param generation 画面版本号
+     * @return 结果副本，画面已变化或没有记录时返回null
+     */
+    static MatchResult lookup(String templatePath, Rectangle searchArea, ImageMatchConfig config, long generation) {
+        String key = resultKey(templatePath, searchArea);
+        long lastModified = new File(templatePath).lastModified();
+        ResultSettings settings = new ResultSettings(config);
+        synchronized (results) {
+            CachedResult cached = results.get(key);
+            if (cached == null || cached.generation != generation || !cached.settings.equals(settings)
+                    || cached.templateModified != lastModified) {
+                executedMatchCount.incrementAndGet();
+                return null;
+            }
+            skippedMatchCount.incrementAndGet();
+            return copy(cached.result);
+        }
+    }
+
+    /**
+     * 记录模板在指定画面版本上的匹配结果
+     *
+     * @param templatePath 模板图片路径
+     * @param searchArea 截图区域，全屏时为null
+     * @param config 匹配配置
+     * @param generation 画面版本号
+     * @param result 匹配结果（保存副本）
+     */
+    static void store(String templatePath, Rectangle searchArea, ImageMatchConfig config, long generation,
+                      MatchResult result) {
+        CachedResult cached = new CachedResult(generation, new ResultSettings(config),
+                new File(templatePath).lastModified(), copy(result));
+        synchronized (results) {
+            results.put(resultKey(templatePath, searchArea), cached);
+            if (results.size() > MAX_RESULTS) {
+                results.remove(results.keySet().iterator().next());
+            }
+        }
+    }
+
+    /**
+     * 与上一帧比较并更新图块哈希
+     */
+    private static long update(String areaKey, int width, int height, int tileSize, long[] hashes, long start) {
+        FrameState state;
+        synchronized (frames) {
+            state = frames.get(areaKey);
+            if (state == null) {
+                state = new FrameState();
+                frames.put(areaKey, state);
+                if (frames.size() > MAX_AREAS) {
+                    frames.remove(frames.keySet().iterator().next());
+                }
+            }
+        }
+
+        long generation;
+        synchronized (state) {
+            int changed;
+            if (state.hashes == null || state.width != width || state.height != height
+                    || state.tileSize != tileSize) {
+                changed = hashes.length;
+            } else {
+                changed = 0;
+                for (int i = 0; i < hashes.length; i++) {
+                    if (hashes[i] != state.hashes[i]) {
+                        changed++;
+                    }
+                }
+            }
+
+            if (changed > 0) {
+                state.generation = generationSequence.incrementAndGet();
+                state.width = width;
+                state.height = height;
+                state.tileSize = tileSize;
+                changedFrameCount.incrementAndGet();
+                changedTileCount.addAndGet(changed);
+            }
+            state.hashes = hashes;
+            generation = state.generation;
+        }
+
+        frameCount.incrementAndGet();
+        hashTotalNanos.addAndGet(System.nanoTime() - start);
+        return generation;
+    }
+
+    /**
+     * 计算内存截图的图块哈希（按行遍历，每行的像素按所在图块列累加到对应图块）
+     */
+    private static long[] hashTiles(BufferedImage image, int tileSize) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int tileCols = (width + tileSize - 1) / tileSize;
+        int tileRows = (height + tileSize - 1) / tileSize;
+        long[] hashes = newHashes(tileCols * tileRows);
+
+        WritableRaster raster = image.getRaster();
+        int[] pixels = null;
+        int stride = width;
+        if (raster.getParent() == null
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getDataBuffer().getNumBanks() == 1
+                && raster.getDataBuffer().getOffset() == 0
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+            stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+        }
+
+        int[] row = pixels == null ? new int[width] : null;
+        for (int y = 0; y < height; y++) {
+            int[] data = pixels;
+            int offset = y * stride;
+            if (data == null) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                data = row;
+                offset = 0;
+            }
+            int base = (y / tileSize) * tileCols;
+            for (int tx = 0; tx < tileCols; tx++) {
+                int from = offset + tx * tileSize;
+                int to = offset + Math.min(width, (tx + 1) * tileSize);
+                long h = hashes[base + tx];
+                for (int i = from; i < to; i++) {
+                    h = (h ^ data[i]) * FNV_PRIME;
+                }
+                hashes[base + tx] = h;
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * 计算Mat截图的图块哈希（任意通道数的8位图像）
+     */
+    private static long[] hashTiles(Mat image, int tileSize) {
+        int width = image.cols();
+        int height = image.rows();
+        int channels = image.channels();
+        int tileCols = (width + tileSize - 1) / tileSize;
+        int tileRows = (height + tileSize - 1) / tileSize;
+        long[] hashes = newHashes(tileCols * tileRows);
+
+        int rowBytes = width * channels;
+        int length = rowBytes * height;
+        byte[] data = pixelBuffers.get();
+        if (data == null || data.length < length) {
+            data = new byte[length];
+            pixelBuffers.set(data);
+        }
+        Mat continuous = image.isContinuous() ? image : image.clone();
+        try {
+            continuous.get(0, 0, data);
+        } finally {
+            if (continuous != image) {
+                continuous.release();
+            }
+        }
+
+        for (int y = 0; y < height; y++) {
+            int offset = y * rowBytes;
+            int base = (y / tileSize) * tileCols;
+            for (int tx = 0; tx < tileCols; tx++) {
+                int from = offset + tx * tileSize * channels;
+                int to = offset + Math.min(width, (tx + 1) * tileSize) * channels;
+                long h = hashes[base + tx];
+                for (int i = from; i < to; i++) {
+                    h = (h ^ data[i]) * FNV_PRIME;
+                }
+                hashes[base + tx] = h;
+            }
+        }
+        return hashes;
+    }
+
+    private static long[] newHashes(int count) {
+        long[] hashes = new long[count];
+        Arrays.fill(hashes, FNV_OFFSET);
+        return hashes;
+    }
+
+    private static String areaKey(Rectangle searchArea) {
+        return searchArea == null ? FULL_SCREEN_KEY
+                : searchArea.x + "," + searchArea.y + "," + searchArea.width + "x" + searchArea.height;
+    }
+
+    private static String resultKey(String templatePath, Rectangle searchArea) {
+        return templatePath + "|" + areaKey(searchArea);
+    }
+
+    private static MatchResult copy(MatchResult source) {
+        MatchResult copy = new MatchResult();
+        copy.setMatched(source.isMatched());
+        copy.setLocation(source.getLocation() == null ? null : new Point(source.getLocation()));
+        copy.setMatchArea(source.getMatchArea() == null ? null : new Rectangle(source.getMatchArea()));
+        copy.setConfidence(source.getConfidence());
+        copy.setTemplatePath(source.getTemplatePath());
+        copy.setScreenshotPath(source.getScreenshotPath());
+        copy.setMatchTime(source.getMatchTime());
+        return copy;
+    }
+
+    /**
+     * 清空所有图块哈希和缓存的匹配结果
+     */
+    public static void clear() {
+        synchronized (frames) {
+            frames.clear();
+        }
+        synchronized (results) {
+            results.clear();
+        }
+    }
+
+    public static long getFrameCount() {
+        return frameCount.get();
+    }
+
+    public static long getChangedFrameCount() {
+        return changedFrameCount.get();
+    }
+
+    public static long getSkippedMatchCount() {
+        return skippedMatchCount.get();
+    }
+
+    public static long getExecutedMatchCount() {
+        return executedMatchCount.get();
+    }
+
+    /**
+     * 匹配跳过率（0-1）
+     *
+     * @return 跳过率
+     */
+    public static double getSkipRate() {
+        long total = skippedMatchCount.get() + executedMatchCount.get();
+        return total == 0 ? 0.0 : (double) skippedMatchCount.get() / total;
+    }
+
+    /**
+     * 每帧平均哈希耗时（毫秒）
+     *
+     * @return 平均耗时
+     */
+    public static double getAverageHashMillis() {
+        long total = frameCount.get();
+        return total == 0 ? 0.0 : hashTotalNanos.get() / 1_000_000.0 / total;
+    }
+
+    /**
+     * 获取统计信息
+     *
+     * @return 统计信息字符串
+     */
+    public static String getStatistics() {
+        return String.format("帧差门控 - 帧数: %d, 变化帧: %d, 变化图块: %d, 跳过匹配: %d, 执行匹配: %d, "
+                        + "跳过率: %.2f%%, 平均哈希耗时: %.2fms",
+                getFrameCount(), getChangedFrameCount(), changedTileCount.get(), getSkippedMatchCount(),
+                getExecutedMatchCount(), getSkipRate() * 100, getAverageHashMillis());
+    }
+
+    /**
+     * 一个截图区域上一帧的图块哈希
+     */
+    private static class FrameState {
+        private long[] hashes;
+        private int width;
+        private int height;
+        private int tileSize;
+        private long generation;
+    }
+
+    /**
+     * 模板在某个画面版本上的匹配结果
+     */
+    private static class CachedResult {
+        private final long generation;
+        private final ResultSettings settings;
+        private final long templateModified;
+        private final MatchResult result;
+
+        CachedResult(long generation, ResultSettings settings, long templateModified, MatchResult result) {
+            this.generation = generation;
+            this.settings = settings;
+            this.templateModified = templateModified;
+            this.result = result;
+        }
+    }
+
+    /**
+     * 影响匹配结果的配置值快照（调试输出、缓存开关等不影响结果的配置不参与比较）
+     */
+    private static final class ResultSettings {
+        private final TemplateCache.PreprocessKey preprocess;
+        private final double threshold;
+        private final int matchMethod;
+        private final int matchMode;
+        private final boolean pyramidSearch;
+        private final int pyramidLevels;
+        private final int correlationEngine;
+        private final double fftCostFactor;
+        private final boolean locationHint;
+        private final int locationHintPadding;
+        private final boolean hashPrefilter;
+        private final int hashPrefilterMaxDistance;
+        private final int featureCount;
+        private final double featureRatioThreshold;
+        private final int featureMinInliers;
+        private final double featureInlierRatio;
+
+        ResultSettings(ImageMatchConfig config) {
+            this.preprocess = TemplateCache.PreprocessKey.of(config);
+            this.threshold = config.getThreshold();
+            this.matchMethod = config.getMatchMethod();
+            this.matchMode = config.getMatchMode();
+            this.pyramidSearch = config.isEnablePyramidSearch();
+            this.pyramidLevels = config.getPyramidLevels();
+            this.correlationEngine = config.getCorrelationEngine();
+            this.fftCostFactor = config.getFftCostFactor();
+            this.locationHint = config.isEnableLocationHint();
+            this.locationHintPadding = config.getLocationHintPadding();
+            this.hashPrefilter = config.isEnableHashPrefilter();
+            this.hashPrefilterMaxDistance = config.getHashPrefilterMaxDistance();
+            this.featureCount = config.getFeatureCount();
+            this.featureRatioThreshold = config.getFeatureRatioThreshold();
+            this.featureMinInliers = config.getFeatureMinInliers();
+            this.featureInlierRatio = config.getFeatureInlierRatio();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ResultSettings)) {
+                return false;
+            }
+            ResultSettings other = (ResultSettings) o;
+            return preprocess.equals(other.preprocess)
+                    && Double.compare(threshold, other.threshold) == 0
+                    && matchMethod == other.matchMethod
+                    && matchMode == other.matchMode
+                    && pyramidSearch == other.pyramidSearch
+                    && pyramidLevels == other.pyramidLevels
+                    && correlationEngine == other.correlationEngine
+                    && Double.compare(fftCostFactor, other.fftCostFactor) == 0
+                    && locationHint == other.locationHint
+                    && locationHintPadding == other.locationHintPadding
+                    && hashPrefilter == other.hashPrefilter
+                    && hashPrefilterMaxDistance == other.hashPrefilterMaxDistance
+                    && featureCount == other.featureCount
+                    && Double.compare(featureRatioThreshold, other.featureRatioThreshold) == 0
+                    && featureMinInliers == other.featureMinInliers
+                    && Double.compare(featureInlierRatio, other.featureInlierRatio) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(preprocess, threshold, matchMethod, matchMode, pyramidSearch, pyramidLevels,
+                    correlationEngine, fftCostFactor, locationHint, locationHintPadding, hashPrefilter,
+                    hashPrefilterMaxDistance, featureCount, featureRatioThreshold, featureMinInliers,
+                    featureInlierRatio);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.yifei.tools.image.matcher;
 
+import com.yifei.tools.screenshot.FrameSource;
+
 /**
  * 图像匹配配置类
  * 用于配置匹配参数和预处理选项
@@ -9,6 +11,22 @@ package com.yifei.tools.image.matcher;
  */
 public class ImageMatchConfig {
     
+    // 相关计算引擎
+    public static final int ENGINE_AUTO = 0;     // 根据成本模型自动选择
+    public static final int ENGINE_SPATIAL = 1;  // 空间域（Imgproc.matchTemplate）
+    public static final int ENGINE_FFT = 2;      // 频域（FftMatcher）
+    
+    // 匹配模式
+    public static final int MATCH_MODE_TEMPLATE = 0;                // 像素模板匹配
+    public static final int MATCH_MODE_FEATURE = 1;                 // ORB特征点匹配（FeatureMatcher）
+    public static final int MATCH_MODE_TEMPLATE_THEN_FEATURE = 2;   // 先模板匹配，失败后再特征点匹配
+    
+    // 调试图片采样策略（见DebugImageWriter）
+    public static final int DEBUG_SAMPLE_ALL = 0;               // 每次匹配都保存
+    public static final int DEBUG_SAMPLE_EVERY_NTH = 1;         // 每N次匹配保存一次
+    public static final int DEBUG_SAMPLE_FAILURES = 2;          // 只保存匹配失败的
+    public static final int DEBUG_SAMPLE_CONFIDENCE_BAND = 3;   // 只保存置信度落在区间内的（例如阈值附近的差一点匹配上）
+    
     // 匹配阈值
     private double threshold = 0.9;
     
@@ -34,10 +52,77 @@ public class ImageMatchConfig {
     // 匹配方法
     private int matchMethod = 5; // CV_TM_CCOEFF_NORMED
     
+    // 金字塔由粗到精匹配（见PyramidMatcher）
+    private boolean enablePyramidSearch = false;
+    private int pyramidLevels = 0; // 0表示根据模板尺寸自动选择
+    
+    // 分块并行匹配（见TiledMatcher）
+    private boolean enableTiledMatch = false;
+    private int tileParallelism = 0; // 0表示使用CPU核数
+    
+    // 匹配模式
+    private int matchMode = MATCH_MODE_TEMPLATE;
+    
+    // 特征点匹配参数：特征点数量、Lowe比率测试阈值、最少内点数、内点占比阈值（即特征点匹配的置信度阈值）
+    private int featureCount = 1000;
+    private double featureRatioThreshold = 0.75;
+    private int featureMinInliers = 8;
+    private double featureInlierRatio = 0.5;
+    
+    // 相关计算引擎（见FftMatcher），自动模式下频域估算计算量乘以fftCostFactor后小于空间域时使用频域
+    private int correlationEngine = ENGINE_AUTO;
+    private double fftCostFactor = 4000.0;
+    
+    // 多目标查找（findAll）时非极大值抑制的IoU阈值
+    private double nmsIouThreshold = 0.3;
+    
+    // 位置记忆：优先在上次匹配位置附近搜索（见LocationHintMemory）
+    private boolean enableLocationHint = false;
+    private int locationHintPadding = 50;
+    
+    // 感知哈希预筛选：matchTemplate之前先用dHash排除模板不可能出现的画面（见PerceptualHashFilter）
+    private boolean enableHashPrefilter = false;
+    private int hashPrefilterMaxDistance = 6;
+    
+    // 帧差门控：画面在搜索区域内没有变化时复用上次的匹配结果（见FrameChangeDetector）
+    private boolean enableFrameDiffGate = false;
+    private int frameDiffTileSize = 64;
+    
+    // 等待模板出现/消失时的轮询间隔：从初始间隔开始，每次未满足条件后乘以退避倍数，直到最大间隔
+    private long waitInitialIntervalMillis = 100;
+    private long waitMaxIntervalMillis = 1000;
+    private double waitBackoffMultiplier = 1.5;
+    
+    // 截图方式：true为内存截图（直接转换为Mat，不写盘），false为截图保存PNG后再读取
+    private boolean inMemoryCapture = true;
+    
+    // 画面来源（见FrameSource）：为null时使用实时屏幕；指定图片、图片序列或合成画面时按虚拟时间回放，不受inMemoryCapture影响
+    private FrameSource frameSource;
+    
+    // 合并截图（见SharedCapture）：多个线程同时截图时共用开始时间在此窗口内的截图，0表示不合并。
+    // 共用的截图可能早于本次调用（例如点击之前），点击后确认界面变化的调用不要开启
+    private long captureCoalesceMillis = 0;
+    
+    // 连续截图（见ContinuousCapture）运行时内存截图直接取环形缓冲区的最新帧，帧龄超过上限时改为当场截图
+    private long maxFrameAgeMillis = 200;
+    
+    // 是否缓存预处理后的模板（见TemplateCache）
+    private boolean enableTemplateCache = true;
+    
     // 是否保存匹配过程图片
     private boolean saveProcessImages = false;
     private String outputDir = "match_results";
     
+    // 调试图片在后台线程写入：采样策略、每N次、置信度区间 [min, max)、图片格式（png最低压缩级别、bmp不压缩、jpg）
+    private int debugSamplePolicy = DEBUG_SAMPLE_ALL;
+    private int debugSampleInterval = 10;
+    private double debugConfidenceMin = 0.5;
+    private double debugConfidenceMax = 0.9;
+    private String debugImageFormat = "png";
+    
+    // 配置预设名（分阶段耗时统计的profile标签，见StageMetrics）
+    private String profile = "default";
+    
     // 默认配置
     public static ImageMatchConfig getDefaultConfig() {
         return new ImageMatchConfig();
@@ -46,6 +131,7 @@ public class ImageMatchConfig {
     // 高精度配置
     public static ImageMatchConfig getHighPrecisionConfig() {
         ImageMatchConfig config = new ImageMatchConfig();
+        config.setProfile("highPrecision");
         config.setThreshold(0.95);
         config.setEnableGrayscale(true);
         config.setEnableGaussianBlur(true);
@@ -58,12 +144,32 @@ public class ImageMatchConfig {
     // 快速匹配配置
     public static ImageMatchConfig getFastMatchConfig() {
         ImageMatchConfig config = new ImageMatchConfig();
+        config.setProfile("fast");
         config.setThreshold(0.8);
         config.setEnableGrayscale(true);
         config.setEnableGaussianBlur(false);
         return config;
     }
     
+    /**
+     * 按预设名获取配置（命令行工具使用）
+     * 
+     * @param profile default、highPrecision 或 fast
+     * @return 对应的预设配置
+     */
+    public static ImageMatchConfig getPresetConfig(String profile) {
+        switch (profile) {
+            case "default":
+                return getDefaultConfig();
+            case "highPrecision":
+                return getHighPrecisionConfig();
+            case "fast":
+                return getFastMatchConfig();
+            default:
+                throw new IllegalArgumentException("未知的配置预设: " + profile);
+        }
+    }
+    
     // Getters and Setters
     public double getThreshold() {
         return threshold;
@@ -169,6 +275,233 @@ public class ImageMatchConfig {
         this.matchMethod = matchMethod;
     }
     
+    public boolean isEnablePyramidSearch() {
+        return enablePyramidSearch;
+    }
+    
+    public void setEnablePyramidSearch(boolean enablePyramidSearch) {
+        this.enablePyramidSearch = enablePyramidSearch;
+    }
+    
+    public int getPyramidLevels() {
+        return pyramidLevels;
+    }
+    
+    public void setPyramidLevels(int pyramidLevels) {
+        this.pyramidLevels = pyramidLevels;
+    }
+    
+    public boolean isEnableTiledMatch() {
+        return enableTiledMatch;
+    }
+    
+    public void setEnableTiledMatch(boolean enableTiledMatch) {
+        this.enableTiledMatch = enableTiledMatch;
+    }
+    
+    public int getTileParallelism() {
+        return tileParallelism;
+    }
+    
+    public void setTileParallelism(int tileParallelism) {
+        this.tileParallelism = tileParallelism;
+    }
+    
+    public int getMatchMode() {
+        return matchMode;
+    }
+    
+    public void setMatchMode(int matchMode) {
+        this.matchMode = matchMode;
+    }
+    
+    public int getFeatureCount() {
+        return featureCount;
+    }
+    
+    public void setFeatureCount(int featureCount) {
+        this.featureCount = featureCount;
+    }
+    
+    public double getFeatureRatioThreshold() {
+        return featureRatioThreshold;
+    }
+    
+    public void setFeatureRatioThreshold(double featureRatioThreshold) {
+        this.featureRatioThreshold = featureRatioThreshold;
+    }
+    
+    public int getFeatureMinInliers() {
+        return featureMinInliers;
+    }
+    
+    public void setFeatureMinInliers(int featureMinInliers) {
+        this.featureMinInliers = featureMinInliers;
+    }
+    
+    public double getFeatureInlierRatio() {
+        return featureInlierRatio;
+    }
+    
+    public void setFeatureInlierRatio(double featureInlierRatio) {
+        this.featureInlierRatio = featureInlierRatio;
+    }
+    
+    public int getCorrelationEngine() {
+        return correlationEngine;
+    }
+    
+    public void setCorrelationEngine(int correlationEngine) {
+        this.correlationEngine = correlationEngine;
+    }
+    
+    public double getFftCostFactor() {
+        return fftCostFactor;
+    }
+    
+    public void setFftCostFactor(double fftCostFactor) {
+        this.fftCostFactor = fftCostFactor;
+    }
+    
+    /**
+     * 判断给定尺寸下是否使用频域匹配（强制指定引擎时直接返回，自动模式按成本模型估算）
+     * 
+     * @param targetCols 目标宽度
+     * @param targetRows 目标高度
+     * @param templateCols 模板宽度
+     * @param templateRows 模板高度
+     * @return 是否使用频域匹配
+     */
+    public boolean useFftEngine(int targetCols, int targetRows, int templateCols, int templateRows) {
+        if (correlationEngine == ENGINE_FFT) {
+            return true;
+        }
+        if (correlationEngine == ENGINE_SPATIAL) {
+            return false;
+        }
+        return FftMatcher.isFftCheaper(targetCols, targetRows, templateCols, templateRows, fftCostFactor);
+    }
+    
+    public double getNmsIouThreshold() {
+        return nmsIouThreshold;
+    }
+    
+    public void setNmsIouThreshold(double nmsIouThreshold) {
+        this.nmsIouThreshold = nmsIouThreshold;
+    }
+    
+    public boolean isEnableLocationHint() {
+        return enableLocationHint;
+    }
+    
+    public void setEnableLocationHint(boolean enableLocationHint) {
+        this.enableLocationHint = enableLocationHint;
+    }
+    
+    public int getLocationHintPadding() {
+        return locationHintPadding;
+    }
+    
+    public void setLocationHintPadding(int locationHintPadding) {
+        this.locationHintPadding = locationHintPadding;
+    }
+    
+    public boolean isEnableHashPrefilter() {
+        return enableHashPrefilter;
+    }
+    
+    public void setEnableHashPrefilter(boolean enableHashPrefilter) {
+        this.enableHashPrefilter = enableHashPrefilter;
+    }
+    
+    public int getHashPrefilterMaxDistance() {
+        return hashPrefilterMaxDistance;
+    }
+    
+    public void setHashPrefilterMaxDistance(int hashPrefilterMaxDistance) {
+        this.hashPrefilterMaxDistance = hashPrefilterMaxDistance;
+    }
+    
+    public boolean isEnableFrameDiffGate() {
+        return enableFrameDiffGate;
+    }
+    
+    public void setEnableFrameDiffGate(boolean enableFrameDiffGate) {
+        this.enableFrameDiffGate = enableFrameDiffGate;
+    }
+    
+    public int getFrameDiffTileSize() {
+        return frameDiffTileSize;
+    }
+    
+    public void setFrameDiffTileSize(int frameDiffTileSize) {
+        this.frameDiffTileSize = frameDiffTileSize;
+    }
+    
+    public long getWaitInitialIntervalMillis() {
+        return waitInitialIntervalMillis;
+    }
+    
+    public void setWaitInitialIntervalMillis(long waitInitialIntervalMillis) {
+        this.waitInitialIntervalMillis = waitInitialIntervalMillis;
+    }
+    
+    public long getWaitMaxIntervalMillis() {
+        return waitMaxIntervalMillis;
+    }
+    
+    public void setWaitMaxIntervalMillis(long waitMaxIntervalMillis) {
+        this.waitMaxIntervalMillis = waitMaxIntervalMillis;
+    }
+    
+    public double getWaitBackoffMultiplier() {
+        return waitBackoffMultiplier;
+    }
+    
+    public void setWaitBackoffMultiplier(double waitBackoffMultiplier) {
+        this.waitBackoffMultiplier = waitBackoffMultiplier;
+    }
+    
+    public boolean isInMemoryCapture() {
+        return inMemoryCapture;
+    }
+    
+    public void setInMemoryCapture(boolean inMemoryCapture) {
+        this.inMemoryCapture = inMemoryCapture;
+    }
+    
+    public FrameSource getFrameSource() {
+        return frameSource;
+    }
+    
+    public void setFrameSource(FrameSource frameSource) {
+        this.frameSource = frameSource;
+    }
+    
+    public long getCaptureCoalesceMillis() {
+        return captureCoalesceMillis;
+    }
+    
+    public void setCaptureCoalesceMillis(long captureCoalesceMillis) {
+        this.captureCoalesceMillis = captureCoalesceMillis;
+    }
+    
+    public long getMaxFrameAgeMillis() {
+        return maxFrameAgeMillis;
+    }
+    
+    public void setMaxFrameAgeMillis(long maxFrameAgeMillis) {
+        this.maxFrameAgeMillis = maxFrameAgeMillis;
+    }
+    
+    public boolean isEnableTemplateCache() {
+        return enableTemplateCache;
+    }
+    
+    public void setEnableTemplateCache(boolean enableTemplateCache) {
+        this.enableTemplateCache = enableTemplateCache;
+    }
+    
     public boolean isSaveProcessImages() {
         return saveProcessImages;
     }
@@ -184,4 +517,56 @@ public class ImageMatchConfig {
     public void setOutputDir(String outputDir) {
         this.outputDir = outputDir;
     }
-}
\ No newline at end of file
+    
+    public int getDebugSamplePolicy() {
+        return debugSamplePolicy;
+    }
+    
+    public void setDebugSamplePolicy(int debugSamplePolicy) {
+        this.debugSamplePolicy = debugSamplePolicy;
+    }
+    
+    public int getDebugSampleInterval() {
+        return debugSampleInterval;
+    }
+    
+    public void setDebugSampleInterval(int debugSampleInterval) {
+        this.debugSampleInterval = debugSampleInterval;
+    }
+    
+    public double getDebugConfidenceMin() {
+        return debugConfidenceMin;
+    }
+    
+    public void setDebugConfidenceMin(double debugConfidenceMin) {
+        this.debugConfidenceMin = debugConfidenceMin;
+    }
+    
+    public double getDebugConfidenceMax() {
+        return debugConfidenceMax;
+    }
+    
+    public void setDebugConfidenceMax(double debugConfidenceMax) {
+        this.debugConfidenceMax = debugConfidenceMax;
+    }
+    
+    public String getDebugImageFormat() {
+        return debugImageFormat;
+    }
+    
+    public void setDebugImageFormat(String debugImageFormat) {
+        String format = debugImageFormat.toLowerCase(java.util.Locale.ROOT);
+        if (!"png".equals(format) && !"bmp".equals(format) && !"jpg".equals(format)) {
+            throw new IllegalArgumentException("不支持的调试图片格式: " + debugImageFormat + "（可选 png、bmp、jpg）");
+        }
+        this.debugImageFormat = format;
+    }
+    
+    public String getProfile() {
+        return profile;
+    }
+    
+    public void setProfile(String profile) {
+        this.profile = profile;
+    }
+}
@@ -4,12 +4,29 @@ import org.opencv.core.*;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 import nu.pattern.OpenCV;
+import com.yifei.tools.screenshot.ContinuousCapture;
+import com.yifei.tools.screenshot.FrameLease;
+import com.yifei.tools.screenshot.FrameSource;
+import com.yifei.tools.screenshot.ReplayFrameSource;
+import com.yifei.tools.screenshot.ScreenFrameSource;
 import com.yifei.tools.screenshot.ScreenshotUtil;
+import com.yifei.tools.screenshot.SharedCapture;
+import com.yifei.tools.utils.StageMetrics;
 
 import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 图像识别匹配工具类
@@ -59,17 +76,59 @@ public class ImageMatcher {
             return result;
         }
         
+        if (!config.isEnableLocationHint()) {
+            return matchFullScreen(templatePath, config);
+        }
+        
+        // 先在上次匹配位置附近搜索
+        Rectangle hintArea = LocationHintMemory.getSearchArea(templatePath, config.getLocationHintPadding(), 
+                new Rectangle(frameSource(config).getSize()));
+        if (hintArea != null) {
+            long start = System.nanoTime();
+            MatchResult result = matchImageInArea(templatePath, hintArea, config);
+            LocationHintMemory.recordRoiSearch(result.isMatched(), System.nanoTime() - start);
+            
+            if (result.isMatched()) {
+                LocationHintMemory.remember(templatePath, result.getMatchArea());
+                return result;
+            }
+            System.out.println("上次位置附近未找到模板，回退到全屏搜索");
+            MatchCancellation.checkpoint();
+        }
+        
+        // 回退到全屏搜索
+        long start = System.nanoTime();
+        MatchResult result = matchFullScreen(templatePath, config);
+        LocationHintMemory.recordFullScreenSearch(System.nanoTime() - start);
+        if (result.isMatched()) {
+            LocationHintMemory.remember(templatePath, result.getMatchArea());
+        }
+        return result;
+    }
+    
+    /**
+     * 全屏匹配图像
+     * 
+     * @param templatePath 模板图片路径
+     * @param config 匹配配置
+     * @return 匹配结果
+     */
+    private static MatchResult matchFullScreen(String templatePath, ImageMatchConfig config) {
         try {
             // 截取当前屏幕
-            String screenshotPath = captureScreenForMatch(config);
-            if (screenshotPath == null) {
-                MatchResult result = new MatchResult();
-                result.setMatched(false);
-                return result;
+            try (CapturedFrame frame = captureFrame(null, config)) {
+                if (frame == null) {
+                    MatchResult result = new MatchResult();
+                    result.setMatched(false);
+                    return result;
+                }
+                
+                MatchCancellation.checkpoint();
+                return matchGatedFrame(templatePath, frame, null, config);
             }
             
-            return matchImages(templatePath, screenshotPath, config);
-            
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             System.err.println("图像匹配过程中发生异常: " + e.getMessage());
             e.printStackTrace();
@@ -97,36 +156,22 @@ public class ImageMatcher {
         
         try {
             // 截取指定区域
-            String screenshotPath = captureAreaForMatch(searchArea, config);
-            if (screenshotPath == null) {
-                MatchResult result = new MatchResult();
-                result.setMatched(false);
-                return result;
-            }
-            
-            MatchResult result = matchImages(templatePath, screenshotPath, config);
-            
-            // 调整坐标到全屏坐标系
-            if (result.isMatched() && result.getLocation() != null) {
-                java.awt.Point adjustedLocation = new java.awt.Point(
-                    result.getLocation().x + searchArea.x,
-                    result.getLocation().y + searchArea.y
-                );
-                result.setLocation(adjustedLocation);
-                
-                if (result.getMatchArea() != null) {
-                    java.awt.Rectangle adjustedArea = new java.awt.Rectangle(
-                        result.getMatchArea().x + searchArea.x,
-                        result.getMatchArea().y + searchArea.y,
-                        result.getMatchArea().width,
-                        result.getMatchArea().height
-                    );
-                    result.setMatchArea(adjustedArea);
+            MatchResult result;
+            try (CapturedFrame frame = captureFrame(searchArea, config)) {
+                if (frame == null) {
+                    result = new MatchResult();
+                    result.setMatched(false);
+                    return result;
                 }
+                
+                MatchCancellation.checkpoint();
+                result = matchGatedFrame(templatePath, frame, searchArea, config);
             }
             
             return result;
             
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             System.err.println("区域图像匹配过程中发生异常: " + e.getMessage());
             e.printStackTrace();
@@ -137,95 +182,500 @@ public class ImageMatcher {
     }
     
     /**
-     * 匹配两个图像文件
+     * 在截取的画面上匹配模板；启用帧差门控且画面自上次匹配以来没有变化时直接复用上次的结果
      * 
      * @param templatePath 模板图片路径
-     * @param targetPath 目标图片路径
+     * @param frame 截图
+     * @param searchArea 截图区域（结果坐标平移到全屏坐标系），全屏时为null
      * @param config 匹配配置
-     * @return 匹配结果
+     * @return 匹配结果（全屏坐标）
      */
-    public static MatchResult matchImages(String templatePath, String targetPath, ImageMatchConfig config) {
-        MatchResult result = new MatchResult();
-        result.setTemplatePath(templatePath);
-        result.setScreenshotPath(targetPath);
+    private static MatchResult matchGatedFrame(String templatePath, CapturedFrame frame, Rectangle searchArea, 
+                                               ImageMatchConfig config) {
+        if (frame.isGated()) {
+            MatchResult reused = FrameChangeDetector.lookup(templatePath, searchArea, config, frame.generation);
+            if (reused != null) {
+                return reused;
+            }
+        }
         
-        try {
-            // 加载图像
-            Mat template = Imgcodecs.imread(templatePath);
-            Mat target = Imgcodecs.imread(targetPath);
-            
-            if (template.empty()) {
-                System.err.println("无法加载模板图片: " + templatePath);
+        MatchResult result = matchTemplateInTarget(templatePath, frame.image(), frame.path, config, frame.debugCall);
+        
+        // 调整坐标到全屏坐标系
+        if (searchArea != null && result.isMatched()) {
+            offsetResult(result, searchArea.x, searchArea.y);
+        }
+        
+        if (frame.isGated()) {
+            FrameChangeDetector.store(templatePath, searchArea, config, frame.generation, result);
+        }
+        return result;
+    }
+    
+    /**
+     * 等待模板出现在屏幕上
+     * 轮询间隔从 waitInitialIntervalMillis 开始，每次未找到后按 waitBackoffMultiplier 增大，
+     * 不超过 waitMaxIntervalMillis；找到后立即返回，不必等满超时时间
+     * 
+     * @param templatePath 模板图片路径
+     * @param config 匹配配置
+     * @param timeoutMillis 超时时间（毫秒）
+     * @return 匹配成功的结果；超时或线程被中断时返回最后一次的匹配结果（isMatched为false）
+     */
+    public static MatchResult waitUntilAppears(String templatePath, ImageMatchConfig config, long timeoutMillis) {
+        FrameSource clock = frameSource(config);
+        long start = clock.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long interval = config.getWaitInitialIntervalMillis();
+        int polls = 0;
+        
+        while (true) {
+            polls++;
+            MatchResult result = matchImage(templatePath, config);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(clock.nanoTime() - start);
+            if (result.isMatched()) {
+                System.out.println("模板已出现 - 轮询 " + polls + " 次, 耗时 " + elapsedMillis + "ms: " + templatePath);
                 return result;
             }
             
-            if (target.empty()) {
-                System.err.println("无法加载目标图片: " + targetPath);
+            if (!pauseBeforeNextPoll(clock, deadline, interval)) {
+                System.out.println("等待模板出现超时 - 轮询 " + polls + " 次, 耗时 " + elapsedMillis + "ms: " + templatePath);
                 return result;
             }
+            interval = nextPollInterval(interval, config);
+        }
+    }
+    
+    /**
+     * 等待模板从屏幕上消失
+     * 轮询策略与 {@link #waitUntilAppears(String, ImageMatchConfig, long)} 相同
+     * 
+     * @param templatePath 模板图片路径
+     * @param config 匹配配置
+     * @param timeoutMillis 超时时间（毫秒）
+     * @return 模板已消失返回true；超时或线程被中断时返回false
+     */
+    public static boolean waitUntilGone(String templatePath, ImageMatchConfig config, long timeoutMillis) {
+        FrameSource clock = frameSource(config);
+        long start = clock.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long interval = config.getWaitInitialIntervalMillis();
+        int polls = 0;
+        
+        while (true) {
+            polls++;
+            MatchResult result = matchImage(templatePath, config);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(clock.nanoTime() - start);
+            if (!result.isMatched()) {
+                System.out.println("模板已消失 - 轮询 " + polls + " 次, 耗时 " + elapsedMillis + "ms: " + templatePath);
+                return true;
+            }
             
-            // 图像预处理
-            Mat processedTemplate = preprocessImage(template, config, "template");
-            Mat processedTarget = preprocessImage(target, config, "target");
-            
-            // 执行模板匹配
-            Mat matchResult = new Mat();
-            Imgproc.matchTemplate(processedTarget, processedTemplate, matchResult, config.getMatchMethod());
-            
-            // 找到最佳匹配位置
-            Core.MinMaxLocResult mmr = Core.minMaxLoc(matchResult);
-            
-            double confidence;
-            org.opencv.core.Point matchLoc;
-            
-            // 根据匹配方法确定使用最大值还是最小值
-            if (config.getMatchMethod() == Imgproc.TM_SQDIFF || config.getMatchMethod() == Imgproc.TM_SQDIFF_NORMED) {
-                confidence = 1.0 - mmr.minVal;
-                matchLoc = mmr.minLoc;
-            } else {
-                confidence = mmr.maxVal;
-                matchLoc = mmr.maxLoc;
+            if (!pauseBeforeNextPoll(clock, deadline, interval)) {
+                System.out.println("等待模板消失超时 - 轮询 " + polls + " 次, 耗时 " + elapsedMillis + "ms: " + templatePath);
+                return false;
             }
+            interval = nextPollInterval(interval, config);
+        }
+    }
+    
+    /**
+     * 在两次轮询之间等待（不超过截止时间）
+     * 计时和等待都经过画面来源的时钟，回放类来源只推进虚拟时间
+     * 
+     * @param clock 画面来源
+     * @param deadline 截止时间（clock.nanoTime）
+     * @param intervalMillis 本次等待间隔（毫秒）
+     * @return 是否应继续轮询；已到截止时间或线程被中断时返回false
+     */
+    private static boolean pauseBeforeNextPoll(FrameSource clock, long deadline, long intervalMillis) {
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - clock.nanoTime());
+        if (remainingMillis <= 0) {
+            return false;
+        }
+        
+        try {
+            clock.sleep(Math.min(intervalMillis, remainingMillis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        MatchCancellation.checkpoint();
+        return true;
+    }
+    
+    /**
+     * 计算下一次轮询间隔（按倍数退避，不超过最大间隔）
+     */
+    private static long nextPollInterval(long interval, ImageMatchConfig config) {
+        long next = (long) Math.ceil(interval * config.getWaitBackoffMultiplier());
+        return Math.max(1, Math.min(next, config.getWaitMaxIntervalMillis()));
+    }
+    
+    /**
+     * 在同一帧屏幕截图中批量匹配多个模板
+     * 只截图一次、只预处理一次目标图像，各模板在有界线程池中并行匹配
+     * 
+     * @param templatePaths 模板图片路径列表
+     * @param config 匹配配置
+     * @return 模板路径到匹配结果的映射（顺序与输入一致）
+     */
+    public static Map<String, MatchResult> matchAll(List<String> templatePaths, ImageMatchConfig config) {
+        Map<String, MatchResult> results = new LinkedHashMap<>();
+        if (templatePaths == null || templatePaths.isEmpty()) {
+            return results;
+        }
+        
+        if (!opencvLoaded) {
+            System.err.println("OpenCV库未加载，无法进行图像匹配");
+            for (String templatePath : templatePaths) {
+                MatchResult result = new MatchResult();
+                result.setTemplatePath(templatePath);
+                results.put(templatePath, result);
+            }
+            return results;
+        }
+        
+        // 截取一帧屏幕，目标图像只预处理一次
+        try (CapturedFrame frame = captureFrame(null, config)) {
             
-            // 设置结果
-            result.setConfidence(confidence);
-            result.setLocation(new java.awt.Point((int)matchLoc.x, (int)matchLoc.y));
+            // 帧差门控：画面没有变化的模板直接复用上次的结果
+            Map<String, MatchResult> reused = new LinkedHashMap<>();
+            if (frame != null && frame.isGated()) {
+                for (String templatePath : templatePaths) {
+                    MatchResult result = reused.containsKey(templatePath) ? null
+                            : FrameChangeDetector.lookup(templatePath, null, config, frame.generation);
+                    if (result != null) {
+                        reused.put(templatePath, result);
+                    }
+                }
+            }
+            boolean allReused = reused.size() == new HashSet<>(templatePaths).size();
             
-            // 设置匹配区域
-            java.awt.Rectangle matchArea = new java.awt.Rectangle(
-                (int)matchLoc.x, 
-                (int)matchLoc.y, 
-                processedTemplate.cols(), 
-                processedTemplate.rows()
-            );
-            result.setMatchArea(matchArea);
+            try (ScopedMat processedTarget = frame == null || allReused ? null 
+                    : ScopedMat.pooled(preprocessImage(frame.image(), config, "target"))) {
+                matchAllPrepared(templatePaths, frame, processedTarget, reused, results, config);
+            }
+            return results;
+        }
+    }
+    
+    /**
+     * 在预处理后的帧上并行匹配没有复用结果的模板，按模板顺序写入results
+     */
+    private static void matchAllPrepared(List<String> templatePaths, CapturedFrame frame, ScopedMat processedTarget, 
+                                         Map<String, MatchResult> reused, Map<String, MatchResult> results, 
+                                         ImageMatchConfig config) {
+        MatchCancellation.checkpoint();
+        
+        // 各模板并行匹配
+        Map<String, Future<MatchResult>> futures = new LinkedHashMap<>();
+        for (String templatePath : templatePaths) {
+            if (processedTarget == null || futures.containsKey(templatePath) || reused.containsKey(templatePath)) {
+                continue;
+            }
+            final Mat rawTarget = frame.image();
+            final Mat sharedTarget = processedTarget.get();
+            final String framePath = frame.path;
+            futures.put(templatePath, BatchMatchExecutor.submit(MatchCancellation.propagate(
+                    () -> matchPreparedTarget(templatePath, rawTarget, sharedTarget, framePath, config,
+                                              frame.debugCall))));
+        }
+        
+        // 必须等待全部任务结束后才能释放共享的目标图像，因此中断时也继续等待
+        boolean interrupted = false;
+        CancellationException cancelled = null;
+        for (String templatePath : templatePaths) {
+            MatchResult result = reused.get(templatePath);
+            Future<MatchResult> future = result == null ? futures.get(templatePath) : null;
+            while (future != null) {
+                try {
+                    result = future.get();
+                    if (frame.isGated()) {
+                        FrameChangeDetector.store(templatePath, null, config, frame.generation, result);
+                    }
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CancellationException) {
+                        cancelled = (CancellationException) e.getCause();
+                    } else {
+                        System.err.println("批量匹配模板失败: " + templatePath + ", " + e.getCause());
+                    }
+                    break;
+                }
+            }
+            if (result == null) {
+                result = new MatchResult();
+                result.setTemplatePath(templatePath);
+            }
+            results.put(templatePath, result);
+        }
+        
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (cancelled != null) {
+            throw cancelled;
+        }
+    }
+    
+    /**
+     * 查找屏幕中模板的所有出现位置
+     * 一次遍历匹配响应图收集所有超过阈值的峰值，并用非极大值抑制去除重叠结果
+     * 
+     * @param templatePath 模板图片路径
+     * @param config 匹配配置（threshold为峰值阈值，nmsIouThreshold为重叠抑制阈值）
+     * @param maxResults 最多返回的结果数
+     * @return 按置信度从高到低排序的匹配结果列表，未找到时返回空列表
+     */
+    public static List<MatchResult> findAll(String templatePath, ImageMatchConfig config, int maxResults) {
+        if (!opencvLoaded) {
+            System.err.println("OpenCV库未加载，无法进行图像匹配");
+            return new ArrayList<>();
+        }
+        
+        try (CapturedFrame frame = captureFrame(null, config)) {
+            if (frame == null) {
+                return new ArrayList<>();
+            }
             
-            // 判断是否匹配成功
-            boolean matched = confidence >= config.getThreshold();
-            result.setMatched(matched);
+            MatchCancellation.checkpoint();
+            return findAllInTarget(templatePath, frame.image(), frame.path, config, maxResults);
             
-            System.out.println("图像匹配完成 - 置信度: " + String.format("%.4f", confidence) + 
-                             ", 阈值: " + config.getThreshold() + 
-                             ", 匹配: " + (matched ? "成功" : "失败"));
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            System.err.println("多目标匹配过程中发生异常: " + e.getMessage());
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * 查找图像文件中模板的所有出现位置
+     * 
+     * @param templatePath 模板图片路径
+     * @param targetPath 目标图片路径
+     * @param config 匹配配置
+     * @param maxResults 最多返回的结果数
+     * @return 按置信度从高到低排序的匹配结果列表，未找到时返回空列表
+     */
+    public static List<MatchResult> findAllInImage(String templatePath, String targetPath, 
+                                                   ImageMatchConfig config, int maxResults) {
+        try (ScopedMat target = ScopedMat.of(Imgcodecs.imread(targetPath))) {
+            if (target.get().empty()) {
+                System.err.println("无法加载目标图片: " + targetPath);
+                return new ArrayList<>();
+            }
+            return findAllInTarget(templatePath, target.get(), targetPath, config, maxResults);
+        }
+    }
+    
+    /**
+     * 在内存中的目标图像上查找模板的所有出现位置
+     * 
+     * @param templatePath 模板图片路径
+     * @param target 目标图像（BGR）
+     * @param targetPath 目标图像对应的文件路径（仅用于结果记录，可为null）
+     * @param config 匹配配置
+     * @param maxResults 最多返回的结果数
+     * @return 匹配结果列表
+     */
+    private static List<MatchResult> findAllInTarget(String templatePath, Mat target, String targetPath, 
+                                                     ImageMatchConfig config, int maxResults) {
+        try (TemplateCache.CachedTemplate cachedTemplate = acquireTemplate(templatePath, config)) {
+            if (cachedTemplate == null) {
+                System.err.println("无法加载模板图片: " + templatePath);
+                return new ArrayList<>();
+            }
             
-            if (matched) {
-                System.out.println("匹配位置: (" + matchLoc.x + ", " + matchLoc.y + ")");
+            Mat processedTemplate = cachedTemplate.getMat();
+            try (ScopedMat processedTarget = ScopedMat.pooled(preprocessImage(target, config, "target"));
+                 ScopedMat response = ScopedMat.pooled(acquireResponse(processedTarget.get(), processedTemplate))) {
+                return findAllInResponse(templatePath, targetPath, processedTarget.get(), processedTemplate, 
+                                         cachedTemplate.getSpectra(), response.get(), config, maxResults);
+            }
+        }
+    }
+    
+    /**
+     * 计算响应图并收集所有匹配位置
+     */
+    private static List<MatchResult> findAllInResponse(String templatePath, String targetPath, 
+                                                       Mat processedTarget, Mat processedTemplate, 
+                                                       FftMatcher.SpectrumCache spectra, Mat response,
+                                                       ImageMatchConfig config, int maxResults) {
+        List<MatchResult> results = new ArrayList<>();
+        
+        // 多目标查找需要完整响应图，金字塔模式不适用
+        computeResponse(templatePath, processedTarget, processedTemplate, spectra, config, response, false);
+        
+        List<MatchCandidate> candidates = MultiMatchFinder.find(response, config.getMatchMethod(), 
+                config.getThreshold(), processedTemplate.cols(), processedTemplate.rows(), 
+                config.getNmsIouThreshold(), maxResults);
+        
+        for (MatchCandidate candidate : candidates) {
+            MatchResult result = new MatchResult(true, new java.awt.Point(candidate.x, candidate.y), 
+                                                 candidate.confidence);
+            result.setMatchArea(new java.awt.Rectangle(candidate.x, candidate.y, 
+                                                       processedTemplate.cols(), processedTemplate.rows()));
+            result.setTemplatePath(templatePath);
+            result.setScreenshotPath(targetPath);
+            results.add(result);
+        }
+        
+        System.out.println("多目标匹配完成 - 找到 " + results.size() + " 个匹配, 阈值: " + config.getThreshold());
+        return results;
+    }
+    
+    /**
+     * 匹配两个图像文件
+     * 
+     * @param templatePath 模板图片路径
+     * @param targetPath 目标图片路径
+     * @param config 匹配配置
+     * @return 匹配结果
+     */
+    public static MatchResult matchImages(String templatePath, String targetPath, ImageMatchConfig config) {
+        long loadStart = StageMetrics.start();
+        try (ScopedMat target = ScopedMat.of(Imgcodecs.imread(targetPath))) {
+            StageMetrics.recordMatch("image_load", loadStart, templatePath, config.getProfile());
+            if (target.get().empty()) {
+                System.err.println("无法加载目标图片: " + targetPath);
+                MatchResult result = new MatchResult();
+                result.setTemplatePath(templatePath);
+                result.setScreenshotPath(targetPath);
+                return result;
             }
             
-            // 保存处理过程图片（如果启用）
-            if (config.isSaveProcessImages()) {
-                saveProcessImages(processedTemplate, processedTarget, matchResult, config);
+            return matchTemplateInTarget(templatePath, target.get(), targetPath, config);
+        }
+    }
+    
+    /**
+     * 在内存中的目标图像上匹配模板
+     * 目标图像由调用方负责释放
+     * 
+     * @param templatePath 模板图片路径
+     * @param target 目标图像（BGR）
+     * @param targetPath 目标图像对应的文件路径（仅用于结果记录，可为null）
+     * @param config 匹配配置
+     * @return 匹配结果
+     */
+    static MatchResult matchTemplateInTarget(String templatePath, Mat target, String targetPath, ImageMatchConfig config) {
+        return matchTemplateInTarget(templatePath, target, targetPath, config, 0);
+    }
+    
+    /**
+     * 在内存中的目标图像上匹配模板，调试图片按截图时分配的调用序号采样
+     * 
+     * @param templatePath 模板图片路径
+     * @param target 目标图像（BGR）
+     * @param targetPath 目标图像对应的文件路径（仅用于结果记录，可为null）
+     * @param config 匹配配置
+     * @param debugCall 调试图片采样的调用序号，没有时为0
+     * @return 匹配结果
+     */
+    private static MatchResult matchTemplateInTarget(String templatePath, Mat target, String targetPath, 
+                                                     ImageMatchConfig config, long debugCall) {
+        if (config.getMatchMode() == ImageMatchConfig.MATCH_MODE_FEATURE) {
+            return FeatureMatcher.match(templatePath, target, targetPath, config);
+        }
+        try (ScopedMat processedTarget = ScopedMat.pooled(preprocessImage(target, config, "target"))) {
+            MatchCancellation.checkpoint();
+            return matchPreparedTarget(templatePath, target, processedTarget.get(), targetPath, config, debugCall);
+        }
+    }
+    
+    /**
+     * 在已预处理的目标图像上匹配模板，按匹配模式在模板匹配失败后回退到特征点匹配
+     * 
+     * @param templatePath 模板图片路径
+     * @param target 原始目标图像（特征点匹配使用）
+     * @param processedTarget 预处理后的目标图像
+     * @param targetPath 目标图像对应的文件路径（仅用于结果记录，可为null）
+     * @param config 匹配配置
+     * @return 匹配结果
+     */
+    static MatchResult matchPreparedTarget(String templatePath, Mat target, Mat processedTarget, String targetPath, 
+                                           ImageMatchConfig config) {
+        return matchPreparedTarget(templatePath, target, processedTarget, targetPath, config, 0);
+    }
+    
+    /**
+     * 在已预处理的目标图像上匹配模板，调试图片按截图时分配的调用序号采样
+     * 
+     * @param templatePath 模板图片路径
+     * @param target 原始目标图像（特征点匹配使用）
+     * @param processedTarget 预处理后的目标图像
+     * @param targetPath 目标图像对应的文件路径（仅用于结果记录，可为null）
+     * @param config 匹配配置
+     * @param debugCall 调试图片采样的调用序号，没有时为0
+     * @return 匹配结果
+     */
+    private static MatchResult matchPreparedTarget(String templatePath, Mat target, Mat processedTarget, 
+                                                   String targetPath, ImageMatchConfig config, long debugCall) {
+        if (config.getMatchMode() == ImageMatchConfig.MATCH_MODE_FEATURE) {
+            return FeatureMatcher.match(templatePath, target, targetPath, config);
+        }
+        
+        MatchResult result = matchPreprocessedTarget(templatePath, processedTarget, targetPath, config, debugCall);
+        if (!result.isMatched() && config.getMatchMode() == ImageMatchConfig.MATCH_MODE_TEMPLATE_THEN_FEATURE) {
+            MatchCancellation.checkpoint();
+            return FeatureMatcher.match(templatePath, target, targetPath, config);
+        }
+        return result;
+    }
+    
+    /**
+     * 在已预处理的目标图像上匹配模板
+     * 目标图像只读，可被多个线程同时用于匹配不同模板
+     * 
+     * @param templatePath 模板图片路径
+     * @param processedTarget 预处理后的目标图像
+     * @param targetPath 目标图像对应的文件路径（仅用于结果记录，可为null）
+     * @param config 匹配配置
+     * @param debugCall 调试图片采样的调用序号，没有时为0
+     * @return 匹配结果
+     */
+    static MatchResult matchPreprocessedTarget(String templatePath, Mat processedTarget, String targetPath, 
+                                               ImageMatchConfig config, long debugCall) {
+        MatchResult result = new MatchResult();
+        result.setTemplatePath(templatePath);
+        result.setScreenshotPath(targetPath);
+        
+        // 加载预处理后的模板（命中缓存时不再读取和处理模板图片）
+        try (TemplateCache.CachedTemplate cachedTemplate = acquireTemplate(templatePath, config)) {
+            if (cachedTemplate == null) {
+                System.err.println("无法加载模板图片: " + templatePath);
+                return result;
             }
             
-            // 释放资源
-            template.release();
-            target.release();
-            processedTemplate.release();
-            processedTarget.release();
-            matchResult.release();
+            Mat processedTemplate = cachedTemplate.getMat();
+            MatchCancellation.checkpoint();
+            
+            // 执行模板匹配，找到最佳匹配位置（金字塔模式的响应图尺寸不同，不使用缓冲池）
+            try (ScopedMat matchResult = config.isEnablePyramidSearch()
+                    ? ScopedMat.of(new Mat())
+                    : ScopedMat.pooled(acquireResponse(processedTarget, processedTemplate))) {
+                MatchCandidate best = locateBest(templatePath, processedTarget, processedTemplate, 
+                                                  cachedTemplate.getSpectra(), config, matchResult.get());
+                fillResult(result, best, processedTemplate, config);
+                
+                // 保存处理过程图片（如果启用）：按采样策略复制像素后交给后台线程写入
+                if (config.isSaveProcessImages() && DebugImageWriter.shouldSample(result, config, debugCall)) {
+                    long saveStart = StageMetrics.start();
+                    saveProcessImages(processedTemplate, processedTarget, matchResult.get(), config);
+                    StageMetrics.recordMatch("debug_save", saveStart, templatePath, config.getProfile());
+                }
+            }
             
             return result;
             
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             System.err.println("图像匹配异常: " + e.getMessage());
             e.printStackTrace();
@@ -233,69 +683,440 @@ public class ImageMatcher {
         }
     }
     
+    /**
+     * 获取预处理后的模板（根据配置决定是否经过缓存）
+     * 
+     * @param templatePath 模板图片路径
+     * @param config 匹配配置
+     * @return 预处理后的模板，无法加载时返回null
+     */
+    private static TemplateCache.CachedTemplate acquireTemplate(String templatePath, ImageMatchConfig config) {
+        long start = StageMetrics.start();
+        TemplateCache.CachedTemplate template = config.isEnableTemplateCache()
+                ? TemplateCache.acquire(templatePath, config)
+                : TemplateCache.loadUncached(templatePath, config);
+        StageMetrics.recordMatch("template_load", start, templatePath, config.getProfile());
+        return template;
+    }
+    
+    /**
+     * 根据最佳匹配填充匹配结果
+     * 
+     * @param result 匹配结果
+     * @param best 最佳匹配
+     * @param processedTemplate 预处理后的模板
+     * @param config 匹配配置
+     */
+    private static void fillResult(MatchResult result, MatchCandidate best, Mat processedTemplate, 
+                                   ImageMatchConfig config) {
+        double confidence = best.confidence;
+        org.opencv.core.Point matchLoc = new org.opencv.core.Point(best.x, best.y);
+        
+        // 设置结果
+        result.setConfidence(confidence);
+        result.setLocation(new java.awt.Point((int)matchLoc.x, (int)matchLoc.y));
+        
+        // 设置匹配区域
+        java.awt.Rectangle matchArea = new java.awt.Rectangle(
+            (int)matchLoc.x, 
+            (int)matchLoc.y, 
+            processedTemplate.cols(), 
+            processedTemplate.rows()
+        );
+        result.setMatchArea(matchArea);
+        
+        // 判断是否匹配成功
+        boolean matched = confidence >= config.getThreshold();
+        result.setMatched(matched);
+        
+        System.out.println("图像匹配完成 - 置信度: " + String.format("%.4f", confidence) + 
+                         ", 阈值: " + config.getThreshold() + 
+                         ", 匹配: " + (matched ? "成功" : "失败"));
+        
+        if (matched) {
+            System.out.println("匹配位置: (" + matchLoc.x + ", " + matchLoc.y + ")");
+        }
+    }
+    
+    /**
+     * 在预处理后的目标图像中定位模板的最佳匹配位置
+     * 启用感知哈希预筛选时先排除或缩小搜索区域，再根据配置选择单层全图匹配、金字塔匹配、频域匹配或分块并行匹配
+     * 
+     * @param templatePath 模板图片路径（用于耗时统计标签）
+     * @param processedTarget 预处理后的目标图像
+     * @param processedTemplate 预处理后的模板
+     * @param spectra 模板频谱缓存（频域匹配使用）
+     * @param config 匹配配置
+     * @param matchResult 输出：匹配响应图（用于保存热力图）
+     * @return 最佳匹配
+     */
+    private static MatchCandidate locateBest(String templatePath, Mat processedTarget, Mat processedTemplate, 
+                                             FftMatcher.SpectrumCache spectra,
+                                             ImageMatchConfig config, Mat matchResult) {
+        if (!config.isEnableHashPrefilter()) {
+            return locateInRegion(templatePath, processedTarget, processedTemplate, spectra, config, matchResult);
+        }
+        
+        // 感知哈希预筛选：排除模板不可能出现的画面，或把精确匹配限制在候选区域内
+        long prefilterStart = StageMetrics.start();
+        Rect region = PerceptualHashFilter.candidateRegion(processedTarget, processedTemplate, 
+                                                           config.getHashPrefilterMaxDistance());
+        StageMetrics.recordMatch("hash_prefilter", prefilterStart, templatePath, config.getProfile());
+        if (region == null) {
+            System.out.println("感知哈希预筛选未找到候选位置，跳过精确匹配");
+            if (!matchResult.empty()) {
+                matchResult.setTo(Scalar.all(0));
+            }
+            return new MatchCandidate(0, 0, MatchCandidate.isSqDiff(config.getMatchMethod()) ? 1.0 : 0.0, 
+                                      config.getMatchMethod());
+        }
+        if (region.width == processedTarget.cols() && region.height == processedTarget.rows()) {
+            return locateInRegion(templatePath, processedTarget, processedTemplate, spectra, config, matchResult);
+        }
+        
+        try (ScopedMat roi = ScopedMat.of(processedTarget.submat(region))) {
+            MatchCandidate best = locateInRegion(templatePath, roi.get(), processedTemplate, spectra, config, matchResult);
+            return new MatchCandidate(best.x + region.x, best.y + region.y, best.score, config.getMatchMethod());
+        }
+    }
+    
+    /**
+     * 在整幅（或裁剪后的）目标图像中定位最佳匹配位置
+     * 
+     * @param templatePath 模板图片路径（用于耗时统计标签）
+     * @param processedTarget 预处理后的目标图像
+     * @param processedTemplate 预处理后的模板
+     * @param spectra 模板频谱缓存（频域匹配使用）
+     * @param config 匹配配置
+     * @param matchResult 输出：匹配响应图
+     * @return 最佳匹配（processedTarget坐标系）
+     */
+    private static MatchCandidate locateInRegion(String templatePath, Mat processedTarget, Mat processedTemplate, 
+                                                 FftMatcher.SpectrumCache spectra,
+                                                 ImageMatchConfig config, Mat matchResult) {
+        if (config.isEnablePyramidSearch()) {
+            long pyramidStart = StageMetrics.start();
+            MatchCandidate best = PyramidMatcher.match(processedTarget, processedTemplate, config, matchResult);
+            StageMetrics.recordMatch("pyramid_match", pyramidStart, templatePath, config.getProfile());
+            if (best != null) {
+                return best;
+            }
+            System.out.println("金字塔匹配未得到有效候选，回退到单层匹配");
+        }
+        
+        return computeResponse(templatePath, processedTarget, processedTemplate, spectra, config, matchResult, true);
+    }
+    
+    /**
+     * 计算完整的匹配响应图并定位最佳匹配
+     * 大模板按成本模型（或强制指定）使用频域匹配，否则使用分块并行或单次matchTemplate；
+     * 分块并行匹配直接返回各条带合并后的最佳位置，不再扫描整张响应图，其它方式再做一次minMaxLoc
+     * 
+     * @param templatePath 模板路径（分阶段耗时统计的标签）
+     * @param processedTarget 预处理后的目标图像
+     * @param processedTemplate 预处理后的模板
+     * @param spectra 模板频谱缓存（频域匹配使用）
+     * @param config 匹配配置
+     * @param response 输出：匹配响应图
+     * @param locate 是否需要最佳匹配（多目标查找只需要响应图）
+     * @return 最佳匹配（processedTarget坐标系），locate为false时返回null
+     */
+    private static MatchCandidate computeResponse(String templatePath, Mat processedTarget, Mat processedTemplate, 
+                                                  FftMatcher.SpectrumCache spectra,
+                                                  ImageMatchConfig config, Mat response, boolean locate) {
+        long matchStart = StageMetrics.start();
+        MatchCandidate best = null;
+        if (config.useFftEngine(processedTarget.cols(), processedTarget.rows(), 
+                                processedTemplate.cols(), processedTemplate.rows())) {
+            FftMatcher.matchTemplate(processedTarget, processedTemplate, response, config.getMatchMethod(), spectra);
+        } else if (config.isEnableTiledMatch()) {
+            best = TiledMatcher.match(processedTarget, processedTemplate, config, response);
+        } else {
+            Imgproc.matchTemplate(processedTarget, processedTemplate, response, config.getMatchMethod());
+        }
+        StageMetrics.recordMatch("match_template", matchStart, templatePath, config.getProfile());
+        
+        if (best == null && locate) {
+            long minMaxStart = StageMetrics.start();
+            best = MatchCandidate.best(response, config.getMatchMethod(), 0, 0);
+            StageMetrics.recordMatch("min_max_loc", minMaxStart, templatePath, config.getProfile());
+        }
+        return best;
+    }
+    
+    /**
+     * 从缓冲池获取与matchTemplate输出尺寸一致的响应图
+     * 
+     * @param processedTarget 预处理后的目标图像
+     * @param processedTemplate 预处理后的模板
+     * @return 响应图（CV_32FC1），模板大于目标时返回空Mat
+     */
+    private static Mat acquireResponse(Mat processedTarget, Mat processedTemplate) {
+        int rows = processedTarget.rows() - processedTemplate.rows() + 1;
+        int cols = processedTarget.cols() - processedTemplate.cols() + 1;
+        if (rows <= 0 || cols <= 0) {
+            return new Mat();
+        }
+        return MatBufferPool.acquire(rows, cols, CvType.CV_32FC1);
+    }
+    
     /**
      * 图像预处理
+     * 各阶段的输出Mat从当前线程的缓冲池获取，返回的Mat由调用方通过 MatBufferPool.recycle 归还
      * 
-     * @param image 原始图像
+     * @param image 原始图像（只读，不会被修改或释放）
      * @param config 配置参数
      * @param imageType 图像类型（用于保存文件名）
      * @return 处理后的图像
      */
-    private static Mat preprocessImage(Mat image, ImageMatchConfig config, String imageType) {
-        Mat processed = image.clone();
+    static Mat preprocessImage(Mat image, ImageMatchConfig config, String imageType) {
+        long start = StageMetrics.start();
+        try {
+            return runPreprocess(image, config, imageType);
+        } finally {
+            if (start != 0L) {
+                StageMetrics.recordMatch("preprocess_" + imageType, start, null, config.getProfile());
+            }
+        }
+    }
+    
+    /**
+     * 依次执行灰度化、高斯模糊、二值化和缩放
+     */
+    private static Mat runPreprocess(Mat image, ImageMatchConfig config, String imageType) {
+        // processed 在第一个处理阶段之前指向原始图像，不属于本方法
+        Mat processed = image;
         
         try {
             // 1. 灰度化处理
             if (config.isEnableGrayscale() && processed.channels() > 1) {
-                Mat gray = new Mat();
-                Imgproc.cvtColor(processed, gray, Imgproc.COLOR_BGR2GRAY);
-                processed.release();
-                processed = gray;
+                Mat gray = MatBufferPool.acquire(processed.rows(), processed.cols(), 
+                                                 CvType.makeType(processed.depth(), 1));
+                processed = runStage(processed, gray, image, 
+                                     (src, dst) -> Imgproc.cvtColor(src, dst, Imgproc.COLOR_BGR2GRAY));
                 System.out.println("应用灰度化处理 - " + imageType);
             }
             
             // 2. 高斯模糊去噪
             if (config.isEnableGaussianBlur()) {
-                Mat blurred = new Mat();
+                Mat blurred = MatBufferPool.acquire(processed.rows(), processed.cols(), processed.type());
                 Size kernelSize = new Size(config.getGaussianKernelSize(), config.getGaussianKernelSize());
-                Imgproc.GaussianBlur(processed, blurred, kernelSize, 
-                                   config.getGaussianSigmaX(), config.getGaussianSigmaY());
-                processed.release();
-                processed = blurred;
+                processed = runStage(processed, blurred, image, 
+                                     (src, dst) -> Imgproc.GaussianBlur(src, dst, kernelSize, 
+                                                                        config.getGaussianSigmaX(), config.getGaussianSigmaY()));
                 System.out.println("应用高斯模糊处理 - " + imageType);
             }
             
             // 3. 二值化处理
             if (config.isEnableBinarization()) {
-                Mat binary = new Mat();
-                Imgproc.threshold(processed, binary, config.getBinaryThreshold(), 
-                                config.getBinaryMaxValue(), Imgproc.THRESH_BINARY);
-                processed.release();
-                processed = binary;
+                Mat binary = MatBufferPool.acquire(processed.rows(), processed.cols(), processed.type());
+                processed = runStage(processed, binary, image, 
+                                     (src, dst) -> Imgproc.threshold(src, dst, config.getBinaryThreshold(), 
+                                                                     config.getBinaryMaxValue(), Imgproc.THRESH_BINARY));
                 System.out.println("应用二值化处理 - " + imageType);
             }
             
             // 4. 图像缩放
             if (config.isEnableScaling() && 
                 (config.getScaleFactorX() != 1.0 || config.getScaleFactorY() != 1.0)) {
-                Mat scaled = new Mat();
-                Size newSize = new Size(
-                    processed.cols() * config.getScaleFactorX(),
-                    processed.rows() * config.getScaleFactorY()
-                );
-                Imgproc.resize(processed, scaled, newSize);
-                processed.release();
-                processed = scaled;
+                // 与OpenCV将Size转换为整数尺寸的方式一致（截断），保证缓冲区尺寸与输出一致
+                int scaledCols = (int) (processed.cols() * config.getScaleFactorX());
+                int scaledRows = (int) (processed.rows() * config.getScaleFactorY());
+                Mat scaled = MatBufferPool.acquire(scaledRows, scaledCols, processed.type());
+                Size newSize = new Size(scaledCols, scaledRows);
+                processed = runStage(processed, scaled, image, (src, dst) -> Imgproc.resize(src, dst, newSize));
                 System.out.println("应用缩放处理 - " + imageType + 
                                  " (缩放比例: " + config.getScaleFactorX() + "x" + config.getScaleFactorY() + ")");
             }
             
-            return processed;
+            return processed == image ? copyToBuffer(image) : processed;
             
         } catch (Exception e) {
             System.err.println("图像预处理异常: " + e.getMessage());
             e.printStackTrace();
-            return processed;
+            return processed == image ? copyToBuffer(image) : processed;
+        }
+    }
+    
+    /**
+     * 执行一个预处理阶段：成功时归还上一阶段的中间结果（原始图像除外）并返回本阶段输出，
+     * 失败时归还本阶段的输出缓冲区后抛出异常
+     */
+    private static Mat runStage(Mat previous, Mat output, Mat original, PreprocessStage stage) {
+        try {
+            stage.apply(previous, output);
+        } catch (RuntimeException e) {
+            MatBufferPool.recycle(output);
+            throw e;
+        }
+        if (previous != original) {
+            MatBufferPool.recycle(previous);
+        }
+        return output;
+    }
+    
+    /**
+     * 预处理阶段
+     */
+    private interface PreprocessStage {
+        void apply(Mat src, Mat dst);
+    }
+    
+    /**
+     * 将图像复制到缓冲池中的Mat
+     */
+    private static Mat copyToBuffer(Mat image) {
+        Mat copy = MatBufferPool.acquire(image.rows(), image.cols(), image.type());
+        image.copyTo(copy);
+        return copy;
+    }
+    
+    /**
+     * 截取一帧屏幕用于匹配
+     * 内存截图模式下直接复制光栅数据为Mat，仅在开启调试（saveProcessImages）时才写盘；
+     * 否则截图保存为PNG后再读取。配置了画面来源时总是从画面来源取帧
+     * 
+     * @param searchArea 截取区域，为null时截取全屏
+     * @param config 匹配配置
+     * @return 截图帧，失败时返回null；调用方负责release
+     */
+    private static CapturedFrame captureFrame(Rectangle searchArea, ImageMatchConfig config) {
+        if (config.getFrameSource() == null && !config.isInMemoryCapture()) {
+            String screenshotPath = searchArea == null
+                    ? captureScreenForMatch(config)
+                    : captureAreaForMatch(searchArea, config);
+            if (screenshotPath == null) {
+                return null;
+            }
+            long loadStart = StageMetrics.start();
+            ScopedMat image = ScopedMat.of(Imgcodecs.imread(screenshotPath));
+            StageMetrics.recordMatch("image_load", loadStart, null, config.getProfile());
+            if (image.get().empty()) {
+                System.err.println("无法加载目标图片: " + screenshotPath);
+                image.close();
+                return null;
+            }
+            CapturedFrame frame = new CapturedFrame(image, screenshotPath);
+            if (config.isSaveProcessImages()) {
+                frame.debugCall = DebugImageWriter.nextCall();
+            }
+            if (config.isEnableFrameDiffGate()) {
+                frame.generation = FrameChangeDetector.observe(searchArea, image.get(), config.getFrameDiffTileSize());
+            }
+            return frame;
+        }
+        
+        CapturedFrame frame = config.getFrameSource() == null ? captureFromRing(searchArea, config) : null;
+        if (frame == null) {
+            frame = captureFromSource(searchArea, config);
+            if (frame == null) {
+                return null;
+            }
+        }
+        BufferedImage image = frame.source;
+        if (config.isEnableFrameDiffGate()) {
+            frame.generation = FrameChangeDetector.observe(searchArea, image, config.getFrameDiffTileSize());
+        }
+        if (config.isSaveProcessImages()) {
+            frame.debugCall = DebugImageWriter.nextCall();
+        }
+        if (config.isSaveProcessImages() && DebugImageWriter.shouldSaveCapture(config, frame.debugCall)) {
+            Mat converted = frame.image();
+            long saveStart = StageMetrics.start();
+            frame.path = DebugImageWriter.submitCapture(converted, searchArea == null ? "screen_" : "area_", config);
+            StageMetrics.recordMatch("debug_save", saveStart, null, config.getProfile());
+        }
+        return frame;
+    }
+    
+    /**
+     * 获取配置中的画面来源，未指定时为实时屏幕
+     * 
+     * @param config 匹配配置
+     * @return 画面来源
+     */
+    private static FrameSource frameSource(ImageMatchConfig config) {
+        return config.getFrameSource() != null ? config.getFrameSource() : ScreenFrameSource.INSTANCE;
+    }
+    
+    /**
+     * 从画面来源截图
+     * 实时画面在多个线程同时截图时经 SharedCapture 合并为一次截图；回放类来源按虚拟时间取帧，不合并
+     * 
+     * @param searchArea 截取区域，为null时截取全屏
+     * @param config 匹配配置
+     * @return 截图帧，失败时返回null
+     */
+    private static CapturedFrame captureFromSource(Rectangle searchArea, ImageMatchConfig config) {
+        FrameSource source = frameSource(config);
+        if (config.getCaptureCoalesceMillis() <= 0 || source instanceof ReplayFrameSource) {
+            BufferedImage image = source.capture(searchArea);
+            return image == null ? null : new CapturedFrame(image, config.isEnableGrayscale());
+        }
+        FrameLease shared = SharedCapture.capture(source, searchArea, config.getCaptureCoalesceMillis());
+        if (shared == null) {
+            return null;
+        }
+        CapturedFrame frame = new CapturedFrame(shared.getImage(), config.isEnableGrayscale());
+        frame.lease = shared;
+        return frame;
+    }
+    
+    /**
+     * 从连续截图的环形缓冲区取最新帧
+     * 全屏直接使用缓冲槽中的图像，关闭CapturedFrame时归还；区域按行复制出来后立即归还
+     * 
+     * @param searchArea 截取区域，为null时取全屏
+     * @param config 匹配配置
+     * @return 截图帧，连续截图未启动、帧龄超过上限或区域超出画面时返回null（改为当场截图）
+     */
+    private static CapturedFrame captureFromRing(Rectangle searchArea, ImageMatchConfig config) {
+        ContinuousCapture capture = ContinuousCapture.current();
+        if (capture == null) {
+            return null;
+        }
+        Rectangle bounds = new Rectangle(capture.getSize());
+        if (searchArea != null && !bounds.contains(searchArea)) {
+            return null;
+        }
+        ContinuousCapture.Frame latest = capture.latestFrame();
+        if (latest == null) {
+            return null;
+        }
+        if (latest.getAgeMillis() > config.getMaxFrameAgeMillis()) {
+            latest.close();
+            return null;
+        }
+        if (searchArea == null) {
+            CapturedFrame frame = new CapturedFrame(latest.getImage(), config.isEnableGrayscale());
+            frame.lease = latest;
+            return frame;
+        }
+        try {
+            return new CapturedFrame(latest.copyArea(searchArea), config.isEnableGrayscale());
+        } finally {
+            latest.close();
+        }
+    }
+    
+    /**
+     * 将匹配结果的坐标平移到全屏坐标系
+     * 
+     * @param result 匹配结果
+     * @param dx X偏移
+     * @param dy Y偏移
+     */
+    private static void offsetResult(MatchResult result, int dx, int dy) {
+        if (result.getLocation() != null) {
+            result.setLocation(new java.awt.Point(result.getLocation().x + dx, result.getLocation().y + dy));
+        }
+        if (result.getMatchArea() != null) {
+            result.setMatchArea(new java.awt.Rectangle(
+                result.getMatchArea().x + dx,
+                result.getMatchArea().y + dy,
+                result.getMatchArea().width,
+                result.getMatchArea().height
+            ));
         }
     }
     
@@ -317,6 +1138,9 @@ public class ImageMatcher {
             }
             
             boolean success = ScreenshotUtil.captureFullScreen(screenshotPath);
+            if (success) {
+                OutputRetentionManager.register(new File(screenshotPath));
+            }
             return success ? screenshotPath : null;
             
         } catch (Exception e) {
@@ -344,6 +1168,9 @@ public class ImageMatcher {
             }
             
             boolean success = ScreenshotUtil.captureScreen(area.x, area.y, area.width, area.height, screenshotPath);
+            if (success) {
+                OutputRetentionManager.register(new File(screenshotPath));
+            }
             return success ? screenshotPath : null;
             
         } catch (Exception e) {
@@ -354,6 +1181,7 @@ public class ImageMatcher {
     
     /**
      * 保存处理过程图片
+     * 只在调用线程上复制像素，编码和写盘由 DebugImageWriter 的后台线程完成
      * 
      * @param template 处理后的模板图像
      * @param target 处理后的目标图像
@@ -362,34 +1190,74 @@ public class ImageMatcher {
      */
     private static void saveProcessImages(Mat template, Mat target, Mat matchResult, ImageMatchConfig config) {
         try {
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-            String outputDir = config.getOutputDir() + "/process_" + timestamp;
-            
-            File dir = new File(outputDir);
-            if (!dir.exists()) {
-                dir.mkdirs();
+            String outputDir = DebugImageWriter.submitProcessImages(template, target, matchResult, config);
+            if (outputDir != null) {
+                System.out.println("处理过程图片将保存到: " + outputDir);
+            } else {
+                System.out.println("调试图片写入队列已满，丢弃本次处理过程图片");
             }
-            
-            // 保存处理后的模板图像
-            Imgcodecs.imwrite(outputDir + "/processed_template.png", template);
-            
-            // 保存处理后的目标图像
-            Imgcodecs.imwrite(outputDir + "/processed_target.png", target);
-            
-            // 保存匹配结果热力图
-            Mat normalizedResult = new Mat();
-            Core.normalize(matchResult, normalizedResult, 0, 255, Core.NORM_MINMAX, CvType.CV_8UC1);
-            Imgcodecs.imwrite(outputDir + "/match_heatmap.png", normalizedResult);
-            
-            normalizedResult.release();
-            
-            System.out.println("处理过程图片已保存到: " + outputDir);
-            
         } catch (Exception e) {
             System.err.println("保存处理过程图片失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 用于匹配的截图帧
+     */
+    private static class CapturedFrame implements AutoCloseable {
+        private final BufferedImage source;
+        private final boolean grayscale;
+        private ScopedMat image;
+        private String path;
+        // 借用的共享画面（连续截图的缓冲槽或合并截图的结果），关闭时归还
+        private FrameLease lease;
+        // 帧差门控的画面版本号，未启用门控时为-1
+        private long generation = -1;
+        // 调试图片采样的调用序号，截图和处理过程图片按同一序号判断，未开启调试时为0
+        private long debugCall;
+        
+        CapturedFrame(ScopedMat image, String path) {
+            this.source = null;
+            this.grayscale = false;
+            this.image = image;
+            this.path = path;
+        }
+        
+        CapturedFrame(BufferedImage source, boolean grayscale) {
+            this.source = source;
+            this.grayscale = grayscale;
+        }
+        
+        /**
+         * 获取截图Mat，内存截图在第一次使用时才转换（帧差门控命中时不需要转换）
+         * 启用灰度化时内存截图直接转换为单通道灰度，预处理不再需要cvtColor；否则为BGR三通道
+         */
+        Mat image() {
+            if (image == null) {
+                long start = StageMetrics.start();
+                image = ScopedMat.pooled(grayscale 
+                        ? ImageConverter.bufferedImageToGrayMat(source) 
+                        : ImageConverter.bufferedImageToMat(source));
+                StageMetrics.recordCapture("convert", start);
+            }
+            return image.get();
+        }
+        
+        boolean isGated() {
+            return generation >= 0;
+        }
+        
+        @Override
+        public void close() {
+            if (image != null) {
+                image.close();
+            }
+            if (lease != null) {
+                lease.close();
+            }
+        }
+    }
+    
     /**
      * 检查OpenCV是否已加载
      * 
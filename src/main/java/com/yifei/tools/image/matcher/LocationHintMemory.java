@@ -0,0 +1,157 @@
+package com.yifei.tools.image.matcher;
+
+import java.awt.Rectangle;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模板位置记忆
+ * 记录每个模板最近一次匹配成功的区域，下次匹配时先在该区域附近的小范围内搜索，
+ * 置信度不足时再回退到全屏搜索
+ *
+ * 同时统计区域搜索命中率以及区域搜索、全屏搜索各自的耗时
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class LocationHintMemory {
+
+    private static final Map<String, Rectangle> lastLocations = new ConcurrentHashMap<>();
+
+    private static final AtomicLong roiHitCount = new AtomicLong();
+    private static final AtomicLong roiMissCount = new AtomicLong();
+    private static final AtomicLong roiTotalNanos = new AtomicLong();
+    private static final AtomicLong fullScreenCount = new AtomicLong();
+    private static final AtomicLong fullScreenTotalNanos = new AtomicLong();
+
+    /**
+     * 获取模板的提示搜索区域（上次匹配区域四周扩展padding像素，并裁剪到屏幕范围内）
+     *
+     * @param templatePath 模板图片路径
+     * @param padding 扩展像素数
+     * @param screenBounds 屏幕范围
+     * @return 搜索区域，没有记录或区域无效时返回null
+     */
+    static Rectangle getSearchArea(String templatePath, int padding, Rectangle screenBounds) {
+        Rectangle last = lastLocations.get(templatePath);
+        if (last == null) {
+            return null;
+        }
+
+        Rectangle padded = new Rectangle(last.x - padding, last.y - padding,
+                last.width + padding * 2, last.height + padding * 2);
+        Rectangle clipped = padded.intersection(screenBounds);
+        if (clipped.width < last.width || clipped.height < last.height) {
+            return null;
+        }
+        return clipped;
+    }
+
+    /**
+     * 记录模板最近一次匹配成功的区域
+     *
+     * @param templatePath 模板图片路径
+     * @param matchArea 匹配区域（全屏坐标）
+     */
+    static void remember(String templatePath, Rectangle matchArea) {
+        if (matchArea != null) {
+            lastLocations.put(templatePath, new Rectangle(matchArea));
+        }
+    }
+
+    /**
+     * 记录一次区域搜索
+     *
+     * @param hit 是否在区域内匹配成功
+     * @param nanos 耗时（纳秒）
+     */
+    static void recordRoiSearch(boolean hit, long nanos) {
+        if (hit) {
+            roiHitCount.incrementAndGet();
+        } else {
+            roiMissCount.incrementAndGet();
+        }
+        roiTotalNanos.addAndGet(nanos);
+    }
+
+    /**
+     * 记录一次全屏搜索
+     *
+     * @param nanos 耗时（纳秒）
+     */
+    static void recordFullScreenSearch(long nanos) {
+        fullScreenCount.incrementAndGet();
+        fullScreenTotalNanos.addAndGet(nanos);
+    }
+
+    /**
+     * 忘记某个模板的位置记录
+     *
+     * @param templatePath 模板图片路径
+     */
+    public static void forget(String templatePath) {
+        lastLocations.remove(templatePath);
+    }
+
+    /**
+     * 清空所有位置记录
+     */
+    public static void clear() {
+        lastLocations.clear();
+    }
+
+    public static long getRoiHitCount() {
+        return roiHitCount.get();
+    }
+
+    public static long getRoiMissCount() {
+        return roiMissCount.get();
+    }
+
+    public static long getFullScreenCount() {
+        return fullScreenCount.get();
+    }
+
+    /**
+     * 区域搜索命中率（0-1）
+     *
+     * @return 命中率
+     */
+    public static double getRoiHitRate() {
+        long total = roiHitCount.get() + roiMissCount.get();
+        return total == 0 ? 0.0 : (double) roiHitCount.get() / total;
+    }
+
+    /**
+     * 区域搜索平均耗时（毫秒）
+     *
+     * @return 平均耗时
+     */
+    public static double getAverageRoiMillis() {
+        long total = roiHitCount.get() + roiMissCount.get();
+        return total == 0 ? 0.0 : roiTotalNanos.get() / 1_000_000.0 / total;
+    }
+
+    /**
+     * 全屏搜索平均耗时（毫秒）
+     *
+     * @return 平均耗时
+     */
+    public static double getAverageFullScreenMillis() {
+        long total = fullScreenCount.get();
+        return total == 0 ? 0.0 : fullScreenTotalNanos.get() / 1_000_000.0 / total;
+    }
+
+    /**
+     * 获取统计信息
+     *
+     * @return 统计信息字符串
+     */
+    public static String getStatistics() {
+        return String.format("位置记忆 - 区域命中: %d, 区域未命中: %d, 命中率: %.2f%%, 全屏搜索: %d, "
+                        + "区域平均耗时: %.2fms, 全屏平均耗时: %.2fms",
+                getRoiHitCount(), getRoiMissCount(), getRoiHitRate() * 100, getFullScreenCount(),
+                getAverageRoiMillis(), getAverageFullScreenMillis());
+    }
+}
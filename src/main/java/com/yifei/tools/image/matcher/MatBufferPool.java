@@ -0,0 +1,217 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mat缓冲池
+ * 每个线程一个缓冲池，按尺寸和类型复用匹配热路径上的中间Mat（截图、灰度、模糊、二值化、缩放、匹配响应图），
+ * 避免每次匹配都重新malloc/free本地内存
+ *
+ * 只要屏幕分辨率和模板不变，预热之后热路径上的Mat全部来自缓冲池，
+ * 可通过 {@link #getAllocationCount()} 在稳定状态下保持不变来验证
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class MatBufferPool {
+
+    // 每种尺寸和类型最多缓存的空闲Mat数量
+    private static final int MAX_IDLE_PER_KEY = 4;
+
+    // 每个线程默认的空闲缓冲区内存上限：128MB
+    private static final long DEFAULT_MAX_IDLE_BYTES_PER_THREAD = 128L * 1024 * 1024;
+
+    private static volatile long maxIdleBytesPerThread = DEFAULT_MAX_IDLE_BYTES_PER_THREAD;
+
+    private static final ThreadLocal<Arena> arenas = ThreadLocal.withInitial(Arena::new);
+
+    private static final AtomicLong allocationCount = new AtomicLong();
+    private static final AtomicLong reuseCount = new AtomicLong();
+
+    /**
+     * 从当前线程的缓冲池获取指定尺寸和类型的Mat
+     * 内容未初始化，调用方需要完整写入；用完后调用 {@link #recycle(Mat)} 归还
+     *
+     * @param rows 行数
+     * @param cols 列数
+     * @param type Mat类型（CvType）
+     * @return Mat
+     */
+    public static Mat acquire(int rows, int cols, int type) {
+        Mat mat = arenas.get().poll(new BufferKey(rows, cols, type));
+        if (mat != null) {
+            reuseCount.incrementAndGet();
+            return mat;
+        }
+        allocationCount.incrementAndGet();
+        return new Mat(rows, cols, type);
+    }
+
+    /**
+     * 将Mat归还到当前线程的缓冲池
+     * 子矩阵、非连续或空Mat直接释放；缓冲池已满时释放最久未使用的缓冲区
+     *
+     * @param mat 要归还的Mat，可为null
+     */
+    public static void recycle(Mat mat) {
+        if (mat == null) {
+            return;
+        }
+        if (mat.empty() || mat.isSubmatrix() || !mat.isContinuous()) {
+            mat.release();
+            return;
+        }
+        arenas.get().offer(new BufferKey(mat.rows(), mat.cols(), mat.type()), mat);
+    }
+
+    /**
+     * 释放当前线程缓冲池中的所有空闲缓冲区
+     */
+    public static void clearCurrentThread() {
+        arenas.get().clear();
+    }
+
+    /**
+     * 设置每个线程空闲缓冲区的内存上限（字节）
+     *
+     * @param bytes 内存上限
+     */
+    public static void setMaxIdleBytesPerThread(long bytes) {
+        maxIdleBytesPerThread = bytes;
+    }
+
+    public static long getMaxIdleBytesPerThread() {
+        return maxIdleBytesPerThread;
+    }
+
+    /**
+     * 缓冲池未命中、需要新分配本地内存的次数
+     *
+     * @return 分配次数
+     */
+    public static long getAllocationCount() {
+        return allocationCount.get();
+    }
+
+    /**
+     * 从缓冲池复用的次数
+     *
+     * @return 复用次数
+     */
+    public static long getReuseCount() {
+        return reuseCount.get();
+    }
+
+    /**
+     * 获取统计信息
+     *
+     * @return 统计信息字符串
+     */
+    public static String getStatistics() {
+        return String.format("Mat缓冲池 - 新分配: %d, 复用: %d, 当前线程空闲: %d 字节",
+                getAllocationCount(), getReuseCount(), arenas.get().idleBytes);
+    }
+
+    /**
+     * 单个线程的缓冲区集合
+     */
+    private static class Arena {
+
+        private final LinkedHashMap<BufferKey, ArrayDeque<Mat>> buffers = new LinkedHashMap<>(16, 0.75f, true);
+        private long idleBytes = 0;
+
+        Mat poll(BufferKey key) {
+            ArrayDeque<Mat> queue = buffers.get(key);
+            if (queue == null || queue.isEmpty()) {
+                return null;
+            }
+            idleBytes -= key.bytes();
+            return queue.poll();
+        }
+
+        void offer(BufferKey key, Mat mat) {
+            long bytes = key.bytes();
+            ArrayDeque<Mat> queue = buffers.computeIfAbsent(key, k -> new ArrayDeque<>());
+            if (queue.size() >= MAX_IDLE_PER_KEY || bytes > maxIdleBytesPerThread) {
+                mat.release();
+                return;
+            }
+
+            queue.push(mat);
+            idleBytes += bytes;
+            trimToBudget(key);
+        }
+
+        /**
+         * 超出内存上限时释放最久未使用的其它尺寸的缓冲区
+         */
+        private void trimToBudget(BufferKey keep) {
+            Iterator<Map.Entry<BufferKey, ArrayDeque<Mat>>> it = buffers.entrySet().iterator();
+            while (idleBytes > maxIdleBytesPerThread && it.hasNext()) {
+                Map.Entry<BufferKey, ArrayDeque<Mat>> entry = it.next();
+                if (entry.getKey().equals(keep)) {
+                    continue;
+                }
+                for (Mat idle : entry.getValue()) {
+                    idle.release();
+                    idleBytes -= entry.getKey().bytes();
+                }
+                it.remove();
+            }
+        }
+
+        void clear() {
+            for (ArrayDeque<Mat> queue : buffers.values()) {
+                for (Mat idle : queue) {
+                    idle.release();
+                }
+            }
+            buffers.clear();
+            idleBytes = 0;
+        }
+    }
+
+    /**
+     * 缓冲区键：尺寸 + 类型
+     */
+    private static class BufferKey {
+        private final int rows;
+        private final int cols;
+        private final int type;
+
+        BufferKey(int rows, int cols, int type) {
+            this.rows = rows;
+            this.cols = cols;
+            this.type = type;
+        }
+
+        long bytes() {
+            return (long) rows * cols * CvType.ELEM_SIZE(type);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BufferKey)) {
+                return false;
+            }
+            BufferKey other = (BufferKey) o;
+            return rows == other.rows && cols == other.cols && type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rows, cols, type);
+        }
+    }
+}
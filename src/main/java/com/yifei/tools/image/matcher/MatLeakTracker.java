@@ -0,0 +1,168 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Mat;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地内存Mat泄漏追踪（调试用）
+ * 记录每个未关闭的 {@link ScopedMat} 及其创建位置，统计存活的Mat数量和字节数；
+ * ScopedMat未close就被GC回收时报告泄漏（包含创建位置的调用栈），并释放其本地内存
+ *
+ * 默认关闭，关闭时登记/注销均为空操作。可通过 -Dopencv.leak.tracking=true 或 {@link #setEnabled(boolean)} 开启
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class MatLeakTracker {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static volatile boolean enabled = Boolean.getBoolean("opencv.leak.tracking");
+
+    private static final Set<TrackedMat> live = ConcurrentHashMap.newKeySet();
+    private static final ReferenceQueue<ScopedMat> collected = new ReferenceQueue<>();
+    private static final AtomicLong leakCount = new AtomicLong();
+
+    /**
+     * 开启或关闭追踪
+     *
+     * @param value 是否开启
+     */
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 登记一个ScopedMat
+     *
+     * @param owner ScopedMat
+     * @param mat 被包装的Mat
+     * @return 追踪标记，未开启追踪时返回null
+     */
+    static Object register(ScopedMat owner, Mat mat) {
+        if (!enabled) {
+            return null;
+        }
+        drainLeaks();
+        TrackedMat tracked = new TrackedMat(owner, mat, collected);
+        live.add(tracked);
+        return tracked;
+    }
+
+    /**
+     * 注销一个ScopedMat（已正常close）
+     *
+     * @param token 追踪标记
+     */
+    static void unregister(Object token) {
+        if (token instanceof TrackedMat) {
+            TrackedMat tracked = (TrackedMat) token;
+            live.remove(tracked);
+            tracked.clear();
+        }
+    }
+
+    /**
+     * 处理已被GC回收但未close的ScopedMat：报告泄漏位置并释放本地内存
+     *
+     * @return 本次发现的泄漏数量
+     */
+    public static int drainLeaks() {
+        int found = 0;
+        Reference<? extends ScopedMat> reference;
+        while ((reference = collected.poll()) != null) {
+            TrackedMat tracked = (TrackedMat) reference;
+            if (!live.remove(tracked)) {
+                continue;
+            }
+            found++;
+            leakCount.incrementAndGet();
+            System.err.println("检测到Mat泄漏: " + tracked.describe() + "，已释放本地内存。创建位置:");
+            tracked.site.printStackTrace();
+            tracked.mat.release();
+        }
+        return found;
+    }
+
+    /**
+     * 当前存活（未close）的Mat数量
+     *
+     * @return 数量
+     */
+    public static int getLiveCount() {
+        return live.size();
+    }
+
+    /**
+     * 当前存活（未close）的Mat占用的本地内存字节数
+     *
+     * @return 字节数
+     */
+    public static long getLiveBytes() {
+        long bytes = 0;
+        for (TrackedMat tracked : live) {
+            bytes += tracked.mat.total() * tracked.mat.elemSize();
+        }
+        return bytes;
+    }
+
+    /**
+     * 累计发现的泄漏数量
+     *
+     * @return 数量
+     */
+    public static long getLeakCount() {
+        return leakCount.get();
+    }
+
+    /**
+     * 打印所有存活的Mat及其创建位置
+     */
+    public static void reportLiveMats() {
+        drainLeaks();
+        System.out.println("存活Mat: " + getLiveCount() + " 个, " + getLiveBytes() + " 字节, 累计泄漏: " + getLeakCount());
+        for (TrackedMat tracked : live) {
+            System.out.println("  " + tracked.describe());
+            StackTraceElement[] stack = tracked.site.getStackTrace();
+            for (int i = 0; i < Math.min(stack.length, 8); i++) {
+                System.out.println("      at " + stack[i]);
+            }
+        }
+    }
+
+    /**
+     * 被追踪的Mat
+     */
+    private static class TrackedMat extends PhantomReference<ScopedMat> {
+        private final Mat mat;
+        private final Throwable site;
+        private final LocalDateTime createdAt;
+        private final String threadName;
+
+        TrackedMat(ScopedMat owner, Mat mat, ReferenceQueue<ScopedMat> queue) {
+            super(owner, queue);
+            this.mat = mat;
+            this.site = new Throwable("Mat创建位置");
+            this.createdAt = LocalDateTime.now();
+            this.threadName = Thread.currentThread().getName();
+        }
+
+        String describe() {
+            return mat.cols() + "x" + mat.rows() + " 类型" + mat.type()
+                    + ", 创建于 " + createdAt.format(TIME_FORMAT)
+                    + ", 线程 " + threadName;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.yifei.tools.image.matcher;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+
+/**
+ * 匹配任务的协作式取消
+ * 异步匹配任务运行时把自己的Future登记到当前线程，匹配流程在各阶段之间（截图、预处理、匹配、回退搜索）
+ * 调用 {@link #checkpoint()}，Future已被取消时抛出CancellationException终止后续阶段
+ *
+ * 同步调用没有登记Future，checkpoint为空操作
+ *
+ * @author yifei
+ * @version 1.0
+ */
+final class MatchCancellation {
+
+    private static final ThreadLocal<Future<?>> current = new ThreadLocal<>();
+
+    private MatchCancellation() {
+    }
+
+    /**
+     * 登记当前线程正在执行的任务
+     *
+     * @param future 任务Future
+     * @return 之前登记的任务（嵌套执行时），退出时传给 {@link #exit(Future)}
+     */
+    static Future<?> enter(Future<?> future) {
+        Future<?> previous = current.get();
+        current.set(future);
+        return previous;
+    }
+
+    /**
+     * 取消登记，恢复之前登记的任务
+     *
+     * @param previous enter返回的任务
+     */
+    static void exit(Future<?> previous) {
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+
+    /**
+     * 阶段检查点：当前任务已取消时抛出CancellationException
+     */
+    static void checkpoint() {
+        Future<?> future = current.get();
+        if (future != null && future.isCancelled()) {
+            throw new CancellationException("匹配任务已取消");
+        }
+    }
+
+    /**
+     * 包装子任务，使其在其它线程上运行时继承当前任务的取消状态
+     *
+     * @param task 子任务
+     * @param <T> 结果类型
+     * @return 包装后的子任务
+     */
+    static <T> Callable<T> propagate(Callable<T> task) {
+        Future<?> owner = current.get();
+        if (owner == null) {
+            return task;
+        }
+        return () -> {
+            Future<?> previous = enter(owner);
+            try {
+                checkpoint();
+                return task.call();
+            } finally {
+                exit(previous);
+            }
+        };
+    }
+}
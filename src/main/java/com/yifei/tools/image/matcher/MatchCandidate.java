@@ -0,0 +1,80 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * 匹配候选位置
+ * 记录模板匹配响应图中的一个位置及其得分，供各匹配引擎之间传递结果
+ *
+ * @author yifei
+ * @version 1.0
+ */
+class MatchCandidate {
+
+    // 左上角坐标（目标图像坐标系）
+    final int x;
+    final int y;
+
+    // 匹配方法的原始得分（TM_SQDIFF系列越小越好，其它方法越大越好）
+    final double score;
+
+    // 归一化后的置信度（越大越好）
+    final double confidence;
+
+    MatchCandidate(int x, int y, double score, int matchMethod) {
+        this.x = x;
+        this.y = y;
+        this.score = score;
+        this.confidence = toConfidence(score, matchMethod);
+    }
+
+    /**
+     * 从匹配响应图中取出最佳位置
+     *
+     * @param response matchTemplate输出的响应图
+     * @param matchMethod 匹配方法
+     * @param offsetX 响应图在目标图像中的X偏移
+     * @param offsetY 响应图在目标图像中的Y偏移
+     * @return 最佳候选
+     */
+    static MatchCandidate best(Mat response, int matchMethod, int offsetX, int offsetY) {
+        Core.MinMaxLocResult mmr = Core.minMaxLoc(response);
+        if (isSqDiff(matchMethod)) {
+            return new MatchCandidate((int) mmr.minLoc.x + offsetX, (int) mmr.minLoc.y + offsetY, mmr.minVal, matchMethod);
+        }
+        return new MatchCandidate((int) mmr.maxLoc.x + offsetX, (int) mmr.maxLoc.y + offsetY, mmr.maxVal, matchMethod);
+    }
+
+    /**
+     * 判断匹配方法是否为平方差系列（值越小匹配越好）
+     *
+     * @param matchMethod 匹配方法
+     * @return 是否为平方差系列
+     */
+    static boolean isSqDiff(int matchMethod) {
+        return matchMethod == Imgproc.TM_SQDIFF || matchMethod == Imgproc.TM_SQDIFF_NORMED;
+    }
+
+    /**
+     * 将原始得分转换为置信度
+     *
+     * @param score 原始得分
+     * @param matchMethod 匹配方法
+     * @return 置信度
+     */
+    static double toConfidence(double score, int matchMethod) {
+        return isSqDiff(matchMethod) ? 1.0 - score : score;
+    }
+
+    /**
+     * 判断当前候选是否优于另一个候选
+     *
+     * @param other 另一个候选，可为null
+     * @return 是否更优
+     */
+    boolean isBetterThan(MatchCandidate other) {
+        return other == null || confidence > other.confidence;
+    }
+}
@@ -0,0 +1,138 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 多目标匹配查找
+ * 一次遍历匹配响应图，收集所有超过阈值的局部峰值，再用非极大值抑制（NMS）去除重叠结果
+ *
+ * 由于所有候选框都是模板大小，IoU只取决于两个候选位置的偏移量
+ *
+ * @author yifei
+ * @version 1.0
+ */
+class MultiMatchFinder {
+
+    /**
+     * 从响应图中查找所有匹配位置
+     *
+     * @param response matchTemplate输出的响应图（CV_32FC1）
+     * @param matchMethod 匹配方法
+     * @param threshold 置信度阈值
+     * @param templateWidth 模板宽度
+     * @param templateHeight 模板高度
+     * @param iouThreshold NMS的IoU阈值，与已保留结果的IoU超过该值的候选被抑制
+     * @param maxResults 最多返回的结果数
+     * @return 按置信度从高到低排序的候选列表
+     */
+    static List<MatchCandidate> find(Mat response, int matchMethod, double threshold,
+                                     int templateWidth, int templateHeight,
+                                     double iouThreshold, int maxResults) {
+        List<MatchCandidate> peaks = collectPeaks(response, matchMethod, threshold);
+        peaks.sort(Comparator.comparingDouble((MatchCandidate c) -> c.confidence).reversed());
+
+        List<MatchCandidate> kept = new ArrayList<>();
+        for (MatchCandidate peak : peaks) {
+            if (kept.size() >= maxResults) {
+                break;
+            }
+
+            boolean suppressed = false;
+            for (MatchCandidate keptCandidate : kept) {
+                if (iou(peak, keptCandidate, templateWidth, templateHeight) > iouThreshold) {
+                    suppressed = true;
+                    break;
+                }
+            }
+
+            if (!suppressed) {
+                kept.add(peak);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * 遍历响应图，收集置信度超过阈值且不小于8邻域的点
+     */
+    private static List<MatchCandidate> collectPeaks(Mat response, int matchMethod, double threshold) {
+        if (response.type() != CvType.CV_32FC1) {
+            throw new IllegalArgumentException("响应图类型必须为CV_32FC1");
+        }
+
+        int rows = response.rows();
+        int cols = response.cols();
+        float[] data = new float[rows * cols];
+        Mat continuous = response.isContinuous() ? response : response.clone();
+        try {
+            continuous.get(0, 0, data);
+        } finally {
+            if (continuous != response) {
+                continuous.release();
+            }
+        }
+
+        // 平方差系列取反，统一为"越大越好"再比较邻域
+        boolean sqDiff = MatchCandidate.isSqDiff(matchMethod);
+        if (sqDiff) {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = -data[i];
+            }
+        }
+
+        List<MatchCandidate> peaks = new ArrayList<>();
+        for (int y = 0; y < rows; y++) {
+            int rowOffset = y * cols;
+            for (int x = 0; x < cols; x++) {
+                float value = data[rowOffset + x];
+                double confidence = sqDiff ? 1.0 + value : value;
+                if (confidence < threshold || !isLocalMax(data, rows, cols, x, y, value)) {
+                    continue;
+                }
+                peaks.add(new MatchCandidate(x, y, sqDiff ? -value : value, matchMethod));
+            }
+        }
+        return peaks;
+    }
+
+    /**
+     * 判断某点是否不小于其8邻域
+     */
+    private static boolean isLocalMax(float[] data, int rows, int cols, int x, int y, float value) {
+        for (int dy = -1; dy <= 1; dy++) {
+            int ny = y + dy;
+            if (ny < 0 || ny >= rows) {
+                continue;
+            }
+            for (int dx = -1; dx <= 1; dx++) {
+                int nx = x + dx;
+                if ((dx == 0 && dy == 0) || nx < 0 || nx >= cols) {
+                    continue;
+                }
+                if (data[ny * cols + nx] > value) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 计算两个模板大小的候选框的IoU
+     */
+    private static double iou(MatchCandidate a, MatchCandidate b, int width, int height) {
+        int overlapWidth = width - Math.abs(a.x - b.x);
+        int overlapHeight = height - Math.abs(a.y - b.y);
+        if (overlapWidth <= 0 || overlapHeight <= 0) {
+            return 0.0;
+        }
+        double intersection = (double) overlapWidth * overlapHeight;
+        double area = (double) width * height;
+        return intersection / (2 * area - intersection);
+    }
+}
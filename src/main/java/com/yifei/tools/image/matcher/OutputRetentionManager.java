@@ -0,0 +1,288 @@
+package com.yifei.tools.image.matcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 输出目录保留策略
+ * 截图（screen_* / area_*）和调试目录（process_*）按数量、总大小和存在时间上限在后台线程中删除最旧的条目
+ *
+ * 启动时扫描一次输出目录建立按时间排序的索引，之后由写入方通过 {@link #register(File)} 登记新文件，
+ * 清理线程只处理登记队列和索引头部，不再重复遍历目录；目录中有几十万个文件时清理开销也不变
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class OutputRetentionManager {
+
+    // 输出目录绝对路径 -> 管理器
+    private static final Map<String, OutputRetentionManager> managers = new ConcurrentHashMap<>();
+
+    private final File root;
+    private final long maxBytes;
+    private final int maxEntries;
+    private final long maxAgeMillis;
+    private final ScheduledExecutorService cleaner;
+
+    // 写入方登记的新条目，由清理线程合并进索引
+    private final Queue<File> pending = new ConcurrentLinkedQueue<>();
+
+    // 以下字段只由清理线程访问
+    private final Deque<Entry> index = new ArrayDeque<>();
+    // 索引中的路径：启动扫描期间登记的文件既会被扫描到又在登记队列中，按路径去重避免重复计入
+    private final Set<File> indexedFiles = new HashSet<>();
+    private long indexedBytes;
+
+    private final AtomicLong registeredCount = new AtomicLong();
+    private final AtomicLong deletedCount = new AtomicLong();
+    private final AtomicLong deletedBytes = new AtomicLong();
+    private volatile int entryCount;
+    private volatile long totalBytes;
+
+    private OutputRetentionManager(File root, long maxBytes, int maxEntries, long maxAgeMillis) {
+        this.root = root;
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = maxAgeMillis;
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "output-retention-" + root.getName());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * 为输出目录启动保留策略（同一目录重复启动时先停止旧的）
+     *
+     * @param dir 输出目录
+     * @param maxBytes 总大小上限（字节），0表示不限
+     * @param maxEntries 条目数上限（一个截图文件或一个process_*目录算一个条目），0表示不限
+     * @param maxAgeMillis 保留时间（毫秒），0表示不限
+     * @param intervalMillis 清理间隔（毫秒）
+     * @return 保留策略管理器
+     */
+    public static OutputRetentionManager start(File dir, long maxBytes, int maxEntries, long maxAgeMillis,
+                                               long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("清理间隔必须大于0");
+        }
+        File root = dir.getAbsoluteFile();
+        if (!root.exists()) {
+            root.mkdirs();
+        }
+        OutputRetentionManager manager = new OutputRetentionManager(root, maxBytes, maxEntries, maxAgeMillis);
+        OutputRetentionManager previous = managers.put(key(root), manager);
+        if (previous != null) {
+            previous.stop();
+        }
+
+        // 初始扫描同样在清理线程上进行，不阻塞启动
+        manager.cleaner.execute(manager::scanExisting);
+        manager.cleaner.scheduleWithFixedDelay(manager::cleanSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        System.out.println(String.format("输出目录保留策略 - 目录: %s, 大小上限: %dMB, 数量上限: %d, 保留时间: %d小时",
+                root, maxBytes / 1024 / 1024, maxEntries, maxAgeMillis / 3_600_000));
+        return manager;
+    }
+
+    /**
+     * 登记输出目录中新写入的文件或process_*目录
+     * 只做一次Map查找和入队，文件大小等在清理线程上读取；所在目录没有启动保留策略时直接忽略
+     *
+     * @param file 新写入的文件或目录（须直接位于输出目录下）
+     */
+    public static void register(File file) {
+        if (managers.isEmpty() || file == null) {
+            return;
+        }
+        // 与启动扫描得到的路径形式一致，便于按路径去重
+        File absolute = file.getAbsoluteFile().toPath().normalize().toFile();
+        File parent = absolute.getParentFile();
+        OutputRetentionManager manager = parent == null ? null : managers.get(key(parent));
+        if (manager != null) {
+            manager.registeredCount.incrementAndGet();
+            manager.pending.add(absolute);
+        }
+    }
+
+    /**
+     * 停止保留策略（不删除文件）
+     */
+    public void stop() {
+        managers.remove(key(root), this);
+        cleaner.shutdownNow();
+    }
+
+    /**
+     * 立即执行一次清理（测试或手动触发）
+     */
+    public void cleanNow() {
+        try {
+            cleaner.submit(this::cleanSafely).get();
+        } catch (Exception e) {
+            System.err.println("输出目录清理失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 启动时扫描一次输出目录，按修改时间建立索引
+     */
+    private void scanExisting() {
+        List<Entry> existing = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(root.toPath())) {
+            for (Path child : children) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                    long size = attributes.isDirectory() ? directorySize(child.toFile()) : attributes.size();
+                    existing.add(new Entry(child.toFile(), size, attributes.lastModifiedTime().toMillis()));
+                } catch (IOException e) {
+                    // 扫描期间被删除的文件
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("扫描输出目录失败: " + root + " - " + e.getMessage());
+        }
+        existing.sort(Comparator.comparingLong(entry -> entry.modified));
+        for (Entry entry : existing) {
+            append(entry);
+        }
+        cleanSafely();
+    }
+
+    private void cleanSafely() {
+        try {
+            clean();
+        } catch (Exception e) {
+            System.err.println("输出目录清理异常: " + root + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * 合并登记队列，然后从最旧的条目开始删除，直到满足全部上限
+     */
+    private void clean() {
+        File file;
+        while ((file = pending.poll()) != null) {
+            if (indexedFiles.contains(file)) {
+                continue;
+            }
+            long size = file.isDirectory() ? directorySize(file) : file.length();
+            append(new Entry(file, size, System.currentTimeMillis()));
+        }
+
+        long expireBefore = maxAgeMillis > 0 ? System.currentTimeMillis() - maxAgeMillis : Long.MIN_VALUE;
+        while (!index.isEmpty()) {
+            Entry oldest = index.peekFirst();
+            boolean overCount = maxEntries > 0 && index.size() > maxEntries;
+            boolean overSize = maxBytes > 0 && indexedBytes > maxBytes;
+            boolean expired = oldest.modified < expireBefore;
+            if (!overCount && !overSize && !expired) {
+                break;
+            }
+            index.pollFirst();
+            indexedFiles.remove(oldest.file);
+            indexedBytes -= oldest.size;
+            if (delete(oldest.file)) {
+                deletedCount.incrementAndGet();
+                deletedBytes.addAndGet(oldest.size);
+            }
+        }
+        entryCount = index.size();
+        totalBytes = indexedBytes;
+    }
+
+    private void append(Entry entry) {
+        if (!indexedFiles.add(entry.file)) {
+            return;
+        }
+        index.addLast(entry);
+        indexedBytes += entry.size;
+        entryCount = index.size();
+        totalBytes = indexedBytes;
+    }
+
+    private static long directorySize(File dir) {
+        File[] files = dir.listFiles();
+        long size = 0;
+        if (files != null) {
+            for (File file : files) {
+                size += file.isDirectory() ? directorySize(file) : file.length();
+            }
+        }
+        return size;
+    }
+
+    private static boolean delete(File file) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    delete(child);
+                }
+            }
+        }
+        // 已被外部删除的条目同样视为已清理
+        return file.delete() || !file.exists();
+    }
+
+    private static String key(File dir) {
+        return dir.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getDeletedCount() {
+        return deletedCount.get();
+    }
+
+    /**
+     * 获取统计信息
+     *
+     * @return 统计信息字符串
+     */
+    public String getStatistics() {
+        return String.format("输出目录保留策略 - 目录: %s, 条目: %d, 大小: %.1fMB, 登记: %d, 待合并: %d, 已删除: %d (%.1fMB)",
+                root, getEntryCount(), getTotalBytes() / 1024.0 / 1024.0, registeredCount.get(), pending.size(),
+                getDeletedCount(), deletedBytes.get() / 1024.0 / 1024.0);
+    }
+
+    /**
+     * 索引条目：一个截图文件或一个process_*目录
+     */
+    private static class Entry {
+        private final File file;
+        private final long size;
+        private final long modified;
+
+        Entry(File file, long size, long modified) {
+            this.file = file;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+}
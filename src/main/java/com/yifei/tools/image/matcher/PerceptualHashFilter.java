@@ -0,0 +1,280 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 感知哈希预筛选
+ * 在完整的matchTemplate之前，用差值哈希（dHash，9x8个格子的相邻格子均值比较，共64位）粗筛候选位置：
+ * 模板计算一次哈希；目标图像按格子尺寸缩小后用积分图求出每个位置的格子和，
+ * 对所有滑动窗口一次性比较出64位哈希并累计与模板哈希的汉明距离
+ *
+ * 没有窗口落在汉明距离上限内时直接判定模板不存在，跳过matchTemplate；
+ * 否则只在候选窗口的外接区域内做精确匹配。模板大多数时候不在屏幕上的轮询因此变得很便宜
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class PerceptualHashFilter {
+
+    private static final int HASH_COLS = 9;
+    private static final int HASH_ROWS = 8;
+
+    // 缩小后每个格子的最小边长（像素），格子太小时对齐误差会让哈希位不稳定
+    private static final int MIN_CELL_SIDE = 4;
+
+    // 目标图像至少缩小到这个比例才做预筛选（筛选成本约与缩放比例的平方成正比）
+    private static final double MAX_SCALE = 0.5;
+
+    // 候选区域超过目标图像面积的这个比例时不再裁剪，直接全图精确匹配
+    private static final double MAX_REGION_RATIO = 0.5;
+
+    private static final AtomicLong evaluatedCount = new AtomicLong();
+    private static final AtomicLong rejectedCount = new AtomicLong();
+    private static final AtomicLong narrowedCount = new AtomicLong();
+    private static final AtomicLong passedCount = new AtomicLong();
+    private static final AtomicLong skippedCount = new AtomicLong();
+    private static final AtomicLong totalNanos = new AtomicLong();
+
+    /**
+     * 预筛选模板可能出现的区域
+     *
+     * @param target 预处理后的目标图像
+     * @param template 预处理后的模板
+     * @param maxDistance 汉明距离上限（0-64）
+     * @return 需要精确匹配的区域（目标图像坐标系，可能是整幅图像）；模板不可能出现时返回null
+     */
+    static Rect candidateRegion(Mat target, Mat template, int maxDistance) {
+        Rect full = new Rect(0, 0, target.cols(), target.rows());
+        double minCell = Math.min(template.cols() / (double) HASH_COLS, template.rows() / (double) HASH_ROWS);
+        double scale = MIN_CELL_SIDE / minCell;
+        if (scale > MAX_SCALE || template.cols() > target.cols() || template.rows() > target.rows()) {
+            // 模板太小时目标图像缩小不了多少，预筛选不比直接matchTemplate便宜
+            skippedCount.incrementAndGet();
+            return full;
+        }
+
+        long start = System.nanoTime();
+        evaluatedCount.incrementAndGet();
+        try {
+            Rect region = scanCandidates(target, template, scale, maxDistance);
+            if (region == null) {
+                rejectedCount.incrementAndGet();
+                return null;
+            }
+
+            // 缩小后的一个像素对应原图1/scale个像素，再加上取整误差
+            int margin = (int) Math.ceil(2 / scale);
+            int x0 = Math.max(0, (int) Math.floor(region.x / scale) - margin);
+            int y0 = Math.max(0, (int) Math.floor(region.y / scale) - margin);
+            int x1 = Math.min(target.cols(), (int) Math.ceil((region.x + region.width - 1) / scale) + margin + template.cols());
+            int y1 = Math.min(target.rows(), (int) Math.ceil((region.y + region.height - 1) / scale) + margin + template.rows());
+            Rect candidate = new Rect(x0, y0, x1 - x0, y1 - y0);
+
+            if (candidate.area() > full.area() * MAX_REGION_RATIO) {
+                passedCount.incrementAndGet();
+                return full;
+            }
+            narrowedCount.incrementAndGet();
+            return candidate;
+        } finally {
+            totalNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 在缩小的目标图像上计算所有窗口与模板哈希的汉明距离
+     *
+     * @return 距离不超过上限的窗口左上角的外接矩形（缩小后的坐标），没有候选时返回null
+     */
+    private static Rect scanCandidates(Mat target, Mat template, double scale, int maxDistance) {
+        Mat smallTarget = new Mat();
+        Mat smallTemplate = new Mat();
+        Mat targetSums = null;
+        Mat templateSums = null;
+        Mat distance = null;
+        Mat mismatch = new Mat();
+        try {
+            shrinkToGray(target, smallTarget, scale);
+            shrinkToGray(template, smallTemplate, scale);
+
+            int cellWidth = Math.max(1, smallTemplate.cols() / HASH_COLS);
+            int cellHeight = Math.max(1, smallTemplate.rows() / HASH_ROWS);
+            targetSums = cellSums(smallTarget, cellWidth, cellHeight);
+            templateSums = cellSums(smallTemplate, cellWidth, cellHeight);
+
+            // 每个窗口左上角一个距离值
+            int windowCols = smallTarget.cols() - smallTemplate.cols() + 1;
+            int windowRows = smallTarget.rows() - smallTemplate.rows() + 1;
+            if (windowCols <= 0 || windowRows <= 0) {
+                return new Rect(0, 0, 1, 1);
+            }
+            distance = Mat.zeros(windowRows, windowCols, CvType.CV_8UC1);
+            Scalar one = new Scalar(1);
+
+            float[] left = new float[1];
+            float[] right = new float[1];
+            for (int row = 0; row < HASH_ROWS; row++) {
+                for (int col = 0; col < HASH_COLS - 1; col++) {
+                    int y = row * cellHeight;
+                    int x = col * cellWidth;
+                    templateSums.get(y, x, left);
+                    templateSums.get(y, x + cellWidth, right);
+                    boolean templateBit = left[0] > right[0];
+
+                    // 窗口该位与模板不同的位置距离加一
+                    Mat a = targetSums.submat(y, y + windowRows, x, x + windowCols);
+                    Mat b = targetSums.submat(y, y + windowRows, x + cellWidth, x + cellWidth + windowCols);
+                    Core.compare(a, b, mismatch, templateBit ? Core.CMP_LE : Core.CMP_GT);
+                    Core.min(mismatch, one, mismatch);
+                    Core.add(distance, mismatch, distance);
+                    a.release();
+                    b.release();
+                }
+                MatchCancellation.checkpoint();
+            }
+
+            Core.compare(distance, new Scalar(maxDistance), mismatch, Core.CMP_LE);
+            if (Core.countNonZero(mismatch) == 0) {
+                return null;
+            }
+            return boundingRect(mismatch);
+        } finally {
+            smallTarget.release();
+            smallTemplate.release();
+            mismatch.release();
+            if (targetSums != null) {
+                targetSums.release();
+            }
+            if (templateSums != null) {
+                templateSums.release();
+            }
+            if (distance != null) {
+                distance.release();
+            }
+        }
+    }
+
+    /**
+     * 转为灰度并按比例缩小
+     */
+    private static void shrinkToGray(Mat image, Mat output, double scale) {
+        Mat gray = image;
+        if (image.channels() > 1) {
+            gray = new Mat();
+            Imgproc.cvtColor(image, gray, image.channels() == 4 ? Imgproc.COLOR_BGRA2GRAY : Imgproc.COLOR_BGR2GRAY);
+        }
+        if (scale < 1.0) {
+            Size size = new Size(Math.max(1, Math.round(image.cols() * scale)), Math.max(1, Math.round(image.rows() * scale)));
+            Imgproc.resize(gray, output, size, 0, 0, Imgproc.INTER_AREA);
+        } else {
+            gray.copyTo(output);
+        }
+        if (gray != image) {
+            gray.release();
+        }
+    }
+
+    /**
+     * 利用积分图计算以每个像素为左上角的格子内像素和
+     *
+     * @return CV_32F，尺寸为 (rows - cellHeight + 1) x (cols - cellWidth + 1)
+     */
+    private static Mat cellSums(Mat gray, int cellWidth, int cellHeight) {
+        Mat integral = new Mat();
+        Mat sums = new Mat();
+        try {
+            // 4K整幅图像的总和会超出int范围，积分图使用double
+            Imgproc.integral(gray, integral, CvType.CV_64F);
+            int rows = gray.rows() - cellHeight + 1;
+            int cols = gray.cols() - cellWidth + 1;
+            Mat topLeft = integral.submat(0, rows, 0, cols);
+            Mat topRight = integral.submat(0, rows, cellWidth, cellWidth + cols);
+            Mat bottomLeft = integral.submat(cellHeight, cellHeight + rows, 0, cols);
+            Mat bottomRight = integral.submat(cellHeight, cellHeight + rows, cellWidth, cellWidth + cols);
+
+            Mat sum = new Mat();
+            Core.subtract(bottomRight, topRight, sum);
+            Core.subtract(sum, bottomLeft, sum);
+            Core.add(sum, topLeft, sum);
+            sum.convertTo(sums, CvType.CV_32F);
+
+            sum.release();
+            topLeft.release();
+            topRight.release();
+            bottomLeft.release();
+            bottomRight.release();
+            return sums;
+        } finally {
+            integral.release();
+        }
+    }
+
+    /**
+     * 计算非零像素的外接矩形
+     */
+    private static Rect boundingRect(Mat mask) {
+        Mat points = new Mat();
+        try {
+            Core.findNonZero(mask, points);
+            return Imgproc.boundingRect(points);
+        } finally {
+            points.release();
+        }
+    }
+
+    public static long getEvaluatedCount() {
+        return evaluatedCount.get();
+    }
+
+    public static long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public static long getNarrowedCount() {
+        return narrowedCount.get();
+    }
+
+    public static long getPassedCount() {
+        return passedCount.get();
+    }
+
+    /**
+     * 直接排除率（0-1）：预筛选后无需精确匹配的比例
+     *
+     * @return 排除率
+     */
+    public static double getRejectionRate() {
+        long total = evaluatedCount.get();
+        return total == 0 ? 0.0 : (double) rejectedCount.get() / total;
+    }
+
+    /**
+     * 预筛选平均耗时（毫秒）
+     *
+     * @return 平均耗时
+     */
+    public static double getAverageMillis() {
+        long total = evaluatedCount.get();
+        return total == 0 ? 0.0 : totalNanos.get() / 1_000_000.0 / total;
+    }
+
+    /**
+     * 获取统计信息
+     *
+     * @return 统计信息字符串
+     */
+    public static String getStatistics() {
+        return String.format("感知哈希预筛选 - 筛选: %d, 直接排除: %d, 缩小区域: %d, 全图验证: %d, 模板过小未筛选: %d, "
+                        + "排除率: %.2f%%, 平均耗时: %.2fms",
+                getEvaluatedCount(), getRejectedCount(), getNarrowedCount(), getPassedCount(), skippedCount.get(),
+                getRejectionRate() * 100, getAverageMillis());
+    }
+}
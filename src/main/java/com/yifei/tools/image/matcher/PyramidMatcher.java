@@ -0,0 +1,189 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 图像金字塔由粗到精匹配
+ * 目标图像和模板同时用pyrDown缩小N层，先在最粗层全图匹配找出若干候选，
+ * 再逐层放大，每层只在候选位置附近的小ROI内重新匹配，直到原始分辨率
+ *
+ * 全屏匹配的计算量约为单层匹配的 1/4^N，返回的结果与单层匹配完全相同的格式
+ *
+ * @author yifei
+ * @version 1.0
+ */
+class PyramidMatcher {
+
+    // 最粗层模板的最小边长，低于该值时特征过少，容易丢失目标
+    private static final int MIN_TEMPLATE_SIDE = 12;
+
+    // 自动选择时的最大层数
+    private static final int MAX_AUTO_LEVELS = 4;
+
+    // 最粗层保留的候选数量
+    private static final int COARSE_CANDIDATES = 3;
+
+    // 每层细化时ROI在候选位置四周扩展的像素数
+    private static final int REFINE_MARGIN = 3;
+
+    /**
+     * 根据模板尺寸自动选择金字塔层数
+     *
+     * @param templateWidth 模板宽度
+     * @param templateHeight 模板高度
+     * @return 层数（0表示不使用金字塔）
+     */
+    static int autoLevels(int templateWidth, int templateHeight) {
+        int minSide = Math.min(templateWidth, templateHeight);
+        int levels = 0;
+        while (levels < MAX_AUTO_LEVELS && (minSide >> (levels + 1)) >= MIN_TEMPLATE_SIDE) {
+            levels++;
+        }
+        return levels;
+    }
+
+    /**
+     * 执行金字塔匹配
+     *
+     * @param target 预处理后的目标图像
+     * @param template 预处理后的模板
+     * @param config 匹配配置
+     * @param heatmap 输出：最粗层的匹配响应图（用于调试图片保存）
+     * @return 原始分辨率下的最佳匹配
+     */
+    static MatchCandidate match(Mat target, Mat template, ImageMatchConfig config, Mat heatmap) {
+        int method = config.getMatchMethod();
+        int levels = config.getPyramidLevels() > 0
+                ? config.getPyramidLevels()
+                : autoLevels(template.cols(), template.rows());
+
+        // 目标图像在最粗层也必须能容纳模板
+        while (levels > 0 && (downSize(target.cols(), levels) < downSize(template.cols(), levels)
+                || downSize(target.rows(), levels) < downSize(template.rows(), levels))) {
+            levels--;
+        }
+
+        if (levels == 0) {
+            Imgproc.matchTemplate(target, template, heatmap, method);
+            return MatchCandidate.best(heatmap, method, 0, 0);
+        }
+
+        List<Mat> targetPyramid = buildPyramid(target, levels);
+        List<Mat> templatePyramid = buildPyramid(template, levels);
+
+        try {
+            // 1. 最粗层全图匹配，取若干候选
+            Imgproc.matchTemplate(targetPyramid.get(levels), templatePyramid.get(levels), heatmap, method);
+            List<MatchCandidate> candidates = topCandidates(heatmap, method,
+                    templatePyramid.get(levels).cols(), templatePyramid.get(levels).rows());
+
+            // 2. 逐层细化每个候选
+            MatchCandidate best = null;
+            for (MatchCandidate candidate : candidates) {
+                MatchCandidate refined = candidate;
+                for (int level = levels - 1; level >= 0 && refined != null; level--) {
+                    refined = refine(targetPyramid.get(level), templatePyramid.get(level),
+                            refined.x * 2, refined.y * 2, method);
+                }
+                if (refined != null && refined.isBetterThan(best)) {
+                    best = refined;
+                }
+            }
+
+            System.out.println("金字塔匹配完成 - 层数: " + levels + ", 候选数: " + candidates.size());
+            return best;
+
+        } finally {
+            // 第0层是调用方传入的图像，不释放
+            for (int i = 1; i < targetPyramid.size(); i++) {
+                targetPyramid.get(i).release();
+                templatePyramid.get(i).release();
+            }
+        }
+    }
+
+    /**
+     * 计算pyrDown若干次后的边长（每次向上取整减半）
+     */
+    private static int downSize(int size, int levels) {
+        for (int i = 0; i < levels; i++) {
+            size = (size + 1) / 2;
+        }
+        return size;
+    }
+
+    /**
+     * 构建金字塔，第0层为原图
+     */
+    private static List<Mat> buildPyramid(Mat image, int levels) {
+        List<Mat> pyramid = new ArrayList<>(levels + 1);
+        pyramid.add(image);
+        for (int i = 1; i <= levels; i++) {
+            Mat down = new Mat();
+            Imgproc.pyrDown(pyramid.get(i - 1), down);
+            pyramid.add(down);
+        }
+        return pyramid;
+    }
+
+    /**
+     * 从最粗层响应图中取出前N个互不重叠的候选
+     * 每取出一个峰值，就把其周围模板大小的区域抹掉，避免重复选中同一位置
+     */
+    private static List<MatchCandidate> topCandidates(Mat response, int method, int templateWidth, int templateHeight) {
+        List<MatchCandidate> candidates = new ArrayList<>(COARSE_CANDIDATES);
+        Mat work = response.clone();
+        try {
+            Scalar suppressValue = new Scalar(MatchCandidate.isSqDiff(method) ? Double.MAX_VALUE : -Double.MAX_VALUE);
+            for (int i = 0; i < COARSE_CANDIDATES; i++) {
+                MatchCandidate candidate = MatchCandidate.best(work, method, 0, 0);
+                candidates.add(candidate);
+                Imgproc.rectangle(work,
+                        new Point(candidate.x - templateWidth / 2, candidate.y - templateHeight / 2),
+                        new Point(candidate.x + templateWidth / 2, candidate.y + templateHeight / 2),
+                        suppressValue, -1);
+            }
+        } finally {
+            work.release();
+        }
+        return candidates;
+    }
+
+    /**
+     * 在候选位置附近的小ROI中重新匹配
+     *
+     * @param target 当前层目标图像
+     * @param template 当前层模板
+     * @param x 候选位置X（当前层坐标）
+     * @param y 候选位置Y（当前层坐标）
+     * @param method 匹配方法
+     * @return 当前层的最佳匹配，ROI无效时返回null
+     */
+    private static MatchCandidate refine(Mat target, Mat template, int x, int y, int method) {
+        int left = Math.max(0, x - REFINE_MARGIN);
+        int top = Math.max(0, y - REFINE_MARGIN);
+        int right = Math.min(target.cols(), x + template.cols() + REFINE_MARGIN);
+        int bottom = Math.min(target.rows(), y + template.rows() + REFINE_MARGIN);
+
+        if (right - left < template.cols() || bottom - top < template.rows()) {
+            return null;
+        }
+
+        Mat roi = target.submat(new Rect(left, top, right - left, bottom - top));
+        Mat response = new Mat();
+        try {
+            Imgproc.matchTemplate(roi, template, response, method);
+            return MatchCandidate.best(response, method, left, top);
+        } finally {
+            response.release();
+            roi.release();
+        }
+    }
+}
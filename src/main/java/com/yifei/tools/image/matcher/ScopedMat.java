@@ -0,0 +1,72 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Mat;
+
+/**
+ * 作用域Mat
+ * 将Mat包装为AutoCloseable，配合try-with-resources保证在所有路径（包括提前返回和异常）上都能释放本地内存
+ *
+ * 开启 {@link MatLeakTracker} 时，每个ScopedMat都会登记创建位置，未close就被GC回收的会被报告为泄漏
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public final class ScopedMat implements AutoCloseable {
+
+    private final Mat mat;
+    private final boolean pooled;
+    private final Object trackingToken;
+    private boolean closed = false;
+
+    private ScopedMat(Mat mat, boolean pooled) {
+        this.mat = mat;
+        this.pooled = pooled;
+        this.trackingToken = MatLeakTracker.register(this, mat);
+    }
+
+    /**
+     * 包装Mat，close时调用release释放
+     *
+     * @param mat Mat
+     * @return 作用域Mat
+     */
+    public static ScopedMat of(Mat mat) {
+        return new ScopedMat(mat, false);
+    }
+
+    /**
+     * 包装来自MatBufferPool的Mat，close时归还缓冲池
+     *
+     * @param mat Mat
+     * @return 作用域Mat
+     */
+    public static ScopedMat pooled(Mat mat) {
+        return new ScopedMat(mat, true);
+    }
+
+    /**
+     * 获取被包装的Mat
+     *
+     * @return Mat
+     */
+    public Mat get() {
+        return mat;
+    }
+
+    /**
+     * 释放Mat（或归还缓冲池），重复调用无副作用
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        MatLeakTracker.unregister(trackingToken);
+        if (pooled) {
+            MatBufferPool.recycle(mat);
+        } else {
+            mat.release();
+        }
+    }
+}
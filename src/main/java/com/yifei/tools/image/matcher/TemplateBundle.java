@@ -0,0 +1,490 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 预编译模板包
+ * 把一个目录下的模板图片按一个或多个预处理配置预先处理好，像素和元数据写入一个二进制文件；
+ * 运行时用MappedByteBuffer映射该文件，模板Mat直接从映射内存复制得到，不再读取和解码PNG、也不再做预处理
+ *
+ * 安装模板包后 {@link TemplateCache} 加载模板时优先从包中取；模板图片仍然存在且大小或修改时间与编译时不同，
+ * 说明图片已更新，该条目视为过期，回退到读取图片
+ *
+ * 文件格式（大端）：魔数、版本、索引长度，索引（模板根目录、条目数、每个条目的相对路径/源文件大小/修改时间/
+ * 预处理配置哈希/预处理配置各字段/行数/列数/类型/数据偏移/数据长度），之后是各条目的原始像素数据。
+ * 条目按预处理配置的各字段逐一比较查找，哈希相同但配置不同的条目不会被误用
+ *
+ * 命令行：TemplateBundle &lt;模板目录&gt; &lt;模板包文件&gt; [default|highPrecision|fast ...]
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class TemplateBundle {
+
+    private static final int MAGIC = 0x54504C42; // "TPLB"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 12;
+
+    private static final String[] IMAGE_EXTENSIONS = {".png", ".jpg", ".jpeg", ".bmp"};
+
+    private static volatile TemplateBundle installed;
+
+    private static final AtomicLong hitCount = new AtomicLong();
+    private static final AtomicLong missCount = new AtomicLong();
+    private static final AtomicLong staleCount = new AtomicLong();
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int dataStart;
+    private final Map<EntryKey, Entry> entries;
+    private final Map<String, Entry> anyProfile;
+
+    private TemplateBundle(File file, MappedByteBuffer buffer, int dataStart, Map<EntryKey, Entry> entries) {
+        this.file = file;
+        this.buffer = buffer;
+        this.dataStart = dataStart;
+        this.entries = entries;
+        this.anyProfile = new HashMap<>();
+        for (Map.Entry<EntryKey, Entry> e : entries.entrySet()) {
+            anyProfile.put(e.getKey().path, e.getValue());
+        }
+    }
+
+    /**
+     * 编译模板目录（包含子目录）为模板包
+     *
+     * @param templateDir 模板目录
+     * @param bundleFile 输出的模板包文件
+     * @param profiles 预处理配置（每个模板按每个配置各保存一份）
+     * @return 写入的条目数
+     * @throws IOException 读写失败
+     */
+    public static int compile(File templateDir, File bundleFile, List<ImageMatchConfig> profiles) throws IOException {
+        if (!ImageMatcher.isOpenCVLoaded()) {
+            throw new IOException("OpenCV库未加载，无法编译模板包");
+        }
+        if (!templateDir.isDirectory()) {
+            throw new IOException("模板目录不存在: " + templateDir);
+        }
+
+        List<File> images = new ArrayList<>();
+        collectImages(templateDir, images);
+
+        // 先预处理全部模板，确定各条目的数据偏移后再写索引
+        List<Entry> compiled = new ArrayList<>();
+        List<ByteBuffer> data = new ArrayList<>();
+        long offset = 0;
+        for (File image : images) {
+            String relativePath = templateDir.toPath().relativize(image.toPath()).toString().replace('\\', '/');
+            for (ImageMatchConfig profile : profiles) {
+                try (ScopedMat source = ScopedMat.of(Imgcodecs.imread(image.getPath()))) {
+                    if (source.get().empty()) {
+                        System.err.println("无法读取模板图片，已跳过: " + image);
+                        break;
+                    }
+                    try (ScopedMat processed = ScopedMat.pooled(ImageMatcher.preprocessImage(source.get(), profile, "template"))) {
+                        Mat mat = processed.get();
+                        ByteBuffer pixels = ByteBuffer.allocateDirect((int) (mat.total() * mat.elemSize()));
+                        Mat view = new Mat(mat.rows(), mat.cols(), mat.type(), pixels);
+                        mat.copyTo(view);
+                        view.release();
+
+                        Entry entry = new Entry(image.length(), image.lastModified());
+                        entry.relativePath = relativePath;
+                        entry.preprocess = TemplateCache.PreprocessKey.of(profile);
+                        entry.rows = mat.rows();
+                        entry.cols = mat.cols();
+                        entry.type = mat.type();
+                        entry.offset = offset;
+                        entry.length = pixels.capacity();
+                        compiled.add(entry);
+                        data.add(pixels);
+                        offset += entry.length;
+                    }
+                }
+            }
+        }
+
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream index = new DataOutputStream(indexBytes);
+        index.writeUTF(templateDir.getPath());
+        index.writeInt(compiled.size());
+        for (Entry entry : compiled) {
+            index.writeUTF(entry.relativePath);
+            index.writeLong(entry.sourceLength);
+            index.writeLong(entry.sourceLastModified);
+            index.writeInt(entry.preprocess.hashCode());
+            entry.preprocess.write(index);
+            index.writeInt(entry.rows);
+            index.writeInt(entry.cols);
+            index.writeInt(entry.type);
+            index.writeLong(entry.offset);
+            index.writeInt(entry.length);
+        }
+        index.flush();
+        byte[] indexArray = indexBytes.toByteArray();
+
+        File parent = bundleFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(bundleFile, "rw");
+             FileChannel channel = raf.getChannel()) {
+            raf.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(indexArray.length).flip();
+            writeFully(channel, header);
+            writeFully(channel, ByteBuffer.wrap(indexArray));
+            for (ByteBuffer pixels : data) {
+                writeFully(channel, pixels);
+            }
+        }
+        return compiled.size();
+    }
+
+    /**
+     * 判断模板包是否比模板目录中的所有图片都新
+     *
+     * @param templateDir 模板目录
+     * @param bundleFile 模板包文件
+     * @return 模板包存在、格式版本与当前一致且没有更新的图片时返回true
+     */
+    public static boolean isUpToDate(File templateDir, File bundleFile) {
+        if (!bundleFile.isFile() || !isCurrentVersion(bundleFile)) {
+            return false;
+        }
+        List<File> images = new ArrayList<>();
+        collectImages(templateDir, images);
+        for (File image : images) {
+            if (image.lastModified() > bundleFile.lastModified()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 读取文件头，判断是否为当前版本的模板包（旧版本需要重新编译）
+     */
+    private static boolean isCurrentVersion(File bundleFile) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(bundleFile))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 映射并安装模板包，模板路径相对于编译时的模板目录解析
+     *
+     * @param bundleFile 模板包文件
+     * @return 安装的模板包
+     * @throws IOException 文件无效或读取失败
+     */
+    public static TemplateBundle install(File bundleFile) throws IOException {
+        return install(bundleFile, null);
+    }
+
+    /**
+     * 映射并安装模板包，替换之前安装的模板包
+     *
+     * @param bundleFile 模板包文件
+     * @param templateRoot 模板目录（模板路径相对于该目录解析），为null时使用编译时的目录
+     * @return 安装的模板包
+     * @throws IOException 文件无效或读取失败
+     */
+    public static TemplateBundle install(File bundleFile, File templateRoot) throws IOException {
+        TemplateBundle bundle = open(bundleFile, templateRoot);
+        installed = bundle;
+        System.out.println("模板包已安装: " + bundleFile + "，条目数: " + bundle.size());
+        return bundle;
+    }
+
+    /**
+     * 卸载模板包（已从包中加载进TemplateCache的模板不受影响）
+     */
+    public static void uninstall() {
+        installed = null;
+    }
+
+    /**
+     * 获取当前安装的模板包
+     *
+     * @return 模板包，未安装时返回null
+     */
+    public static TemplateBundle getInstalled() {
+        return installed;
+    }
+
+    /**
+     * 从已安装的模板包中取出预处理后的模板
+     *
+     * @param templatePath 模板图片路径
+     * @param config 匹配配置（决定预处理方式）
+     * @return 新的Mat（调用方负责释放），包中没有对应条目或条目已过期时返回null
+     */
+    static Mat lookup(String templatePath, ImageMatchConfig config) {
+        TemplateBundle bundle = installed;
+        if (bundle == null) {
+            return null;
+        }
+        Entry entry = bundle.entries.get(new EntryKey(normalize(new File(templatePath)),
+                                                      TemplateCache.PreprocessKey.of(config)));
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        File source = new File(templatePath);
+        if (source.exists() && (source.length() != entry.sourceLength || source.lastModified() != entry.sourceLastModified)) {
+            staleCount.incrementAndGet();
+            System.out.println("模板图片在编译模板包后已修改，改为读取图片: " + templatePath);
+            return null;
+        }
+
+        hitCount.incrementAndGet();
+        return bundle.toMat(entry);
+    }
+
+    /**
+     * 判断模板包中是否包含某个模板（任意预处理配置）
+     *
+     * @param templatePath 模板图片路径
+     * @return 是否包含
+     */
+    public boolean contains(String templatePath) {
+        return anyProfile.containsKey(normalize(new File(templatePath)));
+    }
+
+    /**
+     * 条目数（模板数 x 预处理配置数）
+     *
+     * @return 条目数
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 从映射内存复制出一个独立的Mat（映射文件的生命周期与Mat无关）
+     */
+    private Mat toMat(Entry entry) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(dataStart + (int) entry.offset);
+        slice.limit(dataStart + (int) entry.offset + entry.length);
+        Mat view = new Mat(entry.rows, entry.cols, entry.type, slice.slice());
+        Mat mat = new Mat();
+        view.copyTo(mat);
+        view.release();
+        return mat;
+    }
+
+    /**
+     * 映射模板包文件并解析索引
+     */
+    private static TemplateBundle open(File bundleFile, File templateRoot) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(bundleFile, "r");
+             FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是有效的模板包文件: " + bundleFile);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("不支持的模板包版本: " + buffer.getInt(4));
+        }
+        int indexLength = buffer.getInt(8);
+        byte[] indexArray = new byte[indexLength];
+        ByteBuffer indexBuffer = buffer.duplicate();
+        indexBuffer.position(HEADER_BYTES);
+        indexBuffer.get(indexArray);
+
+        DataInputStream index = new DataInputStream(new ByteArrayInputStream(indexArray));
+        String compiledRoot = index.readUTF();
+        File root = templateRoot != null ? templateRoot : new File(compiledRoot);
+        int count = index.readInt();
+        int dataStart = HEADER_BYTES + indexLength;
+
+        Map<EntryKey, Entry> entries = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String relativePath = index.readUTF();
+            Entry entry = new Entry(index.readLong(), index.readLong());
+            int profileHash = index.readInt();
+            entry.preprocess = TemplateCache.PreprocessKey.read(index);
+            if (entry.preprocess.hashCode() != profileHash) {
+                throw new IOException("模板包文件已损坏（预处理配置校验失败）: " + bundleFile);
+            }
+            entry.rows = index.readInt();
+            entry.cols = index.readInt();
+            entry.type = index.readInt();
+            entry.offset = index.readLong();
+            entry.length = index.readInt();
+            if (dataStart + entry.offset + entry.length > buffer.capacity()) {
+                throw new IOException("模板包文件已损坏: " + bundleFile);
+            }
+            entries.put(new EntryKey(normalize(new File(root, relativePath)), entry.preprocess), entry);
+        }
+        return new TemplateBundle(bundleFile, buffer, dataStart, entries);
+    }
+
+    private static void collectImages(File dir, List<File> images) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collectImages(child, images);
+            } else if (isImage(child.getName())) {
+                images.add(child);
+            }
+        }
+    }
+
+    static boolean isImage(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String extension : IMAGE_EXTENSIONS) {
+            if (lower.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalize(File file) {
+        return file.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    public static long getMissCount() {
+        return missCount.get();
+    }
+
+    public static long getStaleCount() {
+        return staleCount.get();
+    }
+
+    /**
+     * 获取统计信息
+     *
+     * @return 统计信息字符串
+     */
+    public static String getStatistics() {
+        TemplateBundle bundle = installed;
+        return String.format("模板包 - 已安装: %s, 条目数: %d, 命中: %d, 未命中: %d, 过期: %d",
+                bundle == null ? "否" : bundle.file.getPath(), bundle == null ? 0 : bundle.size(),
+                getHitCount(), getMissCount(), getStaleCount());
+    }
+
+    /**
+     * 命令行编译模板包
+     *
+     * @param args 模板目录、模板包文件、预处理配置名（default、highPrecision、fast，默认default）
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法: TemplateBundle <模板目录> <模板包文件> [default|highPrecision|fast ...]");
+            return;
+        }
+
+        List<ImageMatchConfig> profiles = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            profiles.add(ImageMatchConfig.getPresetConfig(args[i]));
+        }
+        if (profiles.isEmpty()) {
+            profiles.add(ImageMatchConfig.getDefaultConfig());
+        }
+
+        long start = System.nanoTime();
+        int count = compile(new File(args[0]), new File(args[1]), profiles);
+        System.out.println(String.format("模板包编译完成: %s，条目数: %d，文件大小: %d字节，耗时: %.1fms",
+                args[1], count, new File(args[1]).length(), (System.nanoTime() - start) / 1_000_000.0));
+    }
+
+    /**
+     * 索引键：模板绝对路径 + 预处理配置（哈希只用于散列，相等比较逐字段进行）
+     */
+    private static class EntryKey {
+        private final String path;
+        private final TemplateCache.PreprocessKey preprocess;
+
+        EntryKey(String path, TemplateCache.PreprocessKey preprocess) {
+            this.path = path;
+            this.preprocess = preprocess;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof EntryKey)) {
+                return false;
+            }
+            EntryKey other = (EntryKey) o;
+            return path.equals(other.path) && preprocess.equals(other.preprocess);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, preprocess);
+        }
+    }
+
+    /**
+     * 索引条目
+     */
+    private static class Entry {
+        private final long sourceLength;
+        private final long sourceLastModified;
+        private String relativePath;
+        private TemplateCache.PreprocessKey preprocess;
+        private int rows;
+        private int cols;
+        private int type;
+        private long offset;
+        private int length;
+
+        Entry(long sourceLength, long sourceLastModified) {
+            this.sourceLength = sourceLength;
+            this.sourceLastModified = sourceLastModified;
+        }
+    }
+}
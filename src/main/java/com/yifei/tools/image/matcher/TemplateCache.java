@@ -0,0 +1,422 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 预处理模板缓存
+ * 缓存已经完成预处理（灰度化、模糊、二值化、缩放）的模板Mat，避免每次匹配都重新读取和处理模板
+ *
+ * 缓存键：文件绝对路径 + 修改时间 + 预处理相关配置
+ * 淘汰策略：LRU，总占用的本地内存（模板像素加上频域匹配缓存的模板频谱）超过预算时淘汰最久未使用的条目
+ *
+ * 被淘汰的Mat在没有调用方使用后立即释放（引用计数），不依赖GC回收
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class TemplateCache {
+
+    // 默认本地内存预算：64MB
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final LinkedHashMap<CacheKey, CachedTemplate> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+    private static long currentBytes = 0;
+
+    private static final AtomicLong hitCount = new AtomicLong();
+    private static final AtomicLong missCount = new AtomicLong();
+    private static final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * 获取预处理后的模板
+     * 调用方使用完毕后必须调用 {@link CachedTemplate#close()} 归还
+     *
+     * @param templatePath 模板图片路径
+     * @param config 匹配配置（决定预处理方式）
+     * @return 预处理后的模板，无法加载时返回null
+     */
+    public static CachedTemplate acquire(String templatePath, ImageMatchConfig config) {
+        File file = new File(templatePath);
+        CacheKey key = new CacheKey(file.getAbsolutePath(), file.lastModified(), PreprocessKey.of(config));
+
+        synchronized (TemplateCache.class) {
+            CachedTemplate cached = entries.get(key);
+            if (cached != null) {
+                hitCount.incrementAndGet();
+                cached.refCount++;
+                return cached;
+            }
+        }
+
+        missCount.incrementAndGet();
+        CachedTemplate loaded = load(templatePath, config);
+        if (loaded == null) {
+            return null;
+        }
+
+        synchronized (TemplateCache.class) {
+            // 并发加载时以先放入缓存的为准
+            CachedTemplate existing = entries.get(key);
+            if (existing != null) {
+                existing.refCount++;
+                loaded.release();
+                return existing;
+            }
+
+            loaded.refCount++;
+            if (loaded.bytes > maxBytes) {
+                // 单个模板超出预算，不进入缓存，归还时直接释放
+                loaded.evicted = true;
+                return loaded;
+            }
+
+            entries.put(key, loaded);
+            currentBytes += loaded.bytes;
+            evictToBudget();
+            return loaded;
+        }
+    }
+
+    /**
+     * 不经过缓存直接加载模板（禁用缓存时使用）
+     * 返回的模板在close时立即释放
+     *
+     * @param templatePath 模板图片路径
+     * @param config 匹配配置
+     * @return 预处理后的模板，无法加载时返回null
+     */
+    public static CachedTemplate loadUncached(String templatePath, ImageMatchConfig config) {
+        CachedTemplate loaded = load(templatePath, config);
+        if (loaded != null) {
+            loaded.refCount = 1;
+            loaded.evicted = true;
+        }
+        return loaded;
+    }
+
+    /**
+     * 读取模板并执行预处理（优先从已安装的模板包中取）
+     */
+    private static CachedTemplate load(String templatePath, ImageMatchConfig config) {
+        // 已安装模板包时直接取预处理好的像素，不再解码图片
+        Mat bundled = TemplateBundle.lookup(templatePath, config);
+        if (bundled != null) {
+            return new CachedTemplate(bundled);
+        }
+
+        Mat template = Imgcodecs.imread(templatePath);
+        if (template.empty()) {
+            template.release();
+            return null;
+        }
+
+        Mat processed = ImageMatcher.preprocessImage(template, config, "template");
+        template.release();
+        return new CachedTemplate(processed);
+    }
+
+    /**
+     * 淘汰最久未使用的条目直到满足内存预算
+     * 调用方需持有类锁
+     */
+    private static void evictToBudget() {
+        Iterator<Map.Entry<CacheKey, CachedTemplate>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            CachedTemplate victim = it.next().getValue();
+            it.remove();
+            evict(victim);
+        }
+    }
+
+    /**
+     * 标记条目为已淘汰，无人使用时立即释放
+     * 调用方需持有类锁
+     */
+    private static void evict(CachedTemplate victim) {
+        currentBytes -= victim.bytes + victim.spectraBytes;
+        victim.evicted = true;
+        evictionCount.incrementAndGet();
+        if (victim.refCount == 0) {
+            victim.release();
+        }
+    }
+
+    /**
+     * 缓存模板的频谱占用变化时计入内存预算，已淘汰的模板不再计入
+     */
+    private static synchronized void spectraResized(CachedTemplate cached, long delta) {
+        if (cached.evicted) {
+            return;
+        }
+        cached.spectraBytes += delta;
+        currentBytes += delta;
+        evictToBudget();
+    }
+
+    /**
+     * 设置缓存的本地内存预算（字节）
+     *
+     * @param bytes 预算字节数
+     */
+    public static synchronized void setMaxBytes(long bytes) {
+        maxBytes = bytes;
+        evictToBudget();
+    }
+
+    public static synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public static synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public static synchronized int size() {
+        return entries.size();
+    }
+
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    public static long getMissCount() {
+        return missCount.get();
+    }
+
+    public static long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 清空缓存，释放所有未被使用的模板
+     */
+    public static synchronized void clear() {
+        for (CachedTemplate cached : entries.values()) {
+            evict(cached);
+        }
+        entries.clear();
+    }
+
+    /**
+     * 获取缓存统计信息
+     *
+     * @return 统计信息字符串
+     */
+    public static String getStatistics() {
+        long hits = hitCount.get();
+        long misses = missCount.get();
+        long total = hits + misses;
+        return String.format("模板缓存 - 命中: %d, 未命中: %d, 命中率: %.2f%%, 淘汰: %d, 条目: %d, 占用: %d/%d 字节",
+                hits, misses, total == 0 ? 0.0 : hits * 100.0 / total,
+                evictionCount.get(), size(), getCurrentBytes(), getMaxBytes());
+    }
+
+    /**
+     * 缓存中的预处理模板
+     * 使用完毕后调用close归还，缓存条目被淘汰且无人使用时释放本地内存
+     */
+    public static class CachedTemplate implements AutoCloseable {
+
+        private final Mat mat;
+        private final long bytes;
+        private final FftMatcher.SpectrumCache spectra =
+                new FftMatcher.SpectrumCache(delta -> spectraResized(this, delta));
+        // 已计入currentBytes的频谱字节数
+        private long spectraBytes = 0;
+        private int refCount = 0;
+        private boolean evicted = false;
+
+        private CachedTemplate(Mat mat) {
+            this.mat = mat;
+            this.bytes = mat.total() * mat.elemSize();
+        }
+
+        /**
+         * 获取预处理后的模板Mat（只读，调用方不得释放或修改）
+         *
+         * @return 模板Mat
+         */
+        public Mat getMat() {
+            return mat;
+        }
+
+        /**
+         * 模板的频谱缓存（频域匹配使用，占用计入缓存内存预算）
+         *
+         * @return 频谱缓存
+         */
+        FftMatcher.SpectrumCache getSpectra() {
+            return spectra;
+        }
+
+        @Override
+        public void close() {
+            synchronized (TemplateCache.class) {
+                refCount--;
+                if (refCount == 0 && evicted) {
+                    release();
+                }
+            }
+        }
+
+        private void release() {
+            mat.release();
+            spectra.release();
+        }
+    }
+
+    /**
+     * 缓存键
+     */
+    private static class CacheKey {
+        private final String path;
+        private final long lastModified;
+        private final PreprocessKey preprocess;
+
+        CacheKey(String path, long lastModified, PreprocessKey preprocess) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.preprocess = preprocess;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return lastModified == other.lastModified
+                    && preprocess.equals(other.preprocess)
+                    && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, preprocess);
+        }
+    }
+
+    /**
+     * 影响模板预处理结果的配置项，未启用的步骤其参数不参与比较
+     */
+    static final class PreprocessKey {
+        private final boolean grayscale;
+        private final boolean gaussianBlur;
+        private final int gaussianKernelSize;
+        private final double gaussianSigmaX;
+        private final double gaussianSigmaY;
+        private final boolean binarization;
+        private final double binaryThreshold;
+        private final double binaryMaxValue;
+        private final boolean scaling;
+        private final double scaleFactorX;
+        private final double scaleFactorY;
+
+        private PreprocessKey(boolean grayscale, boolean gaussianBlur, int gaussianKernelSize,
+                              double gaussianSigmaX, double gaussianSigmaY, boolean binarization,
+                              double binaryThreshold, double binaryMaxValue, boolean scaling,
+                              double scaleFactorX, double scaleFactorY) {
+            this.grayscale = grayscale;
+            this.gaussianBlur = gaussianBlur;
+            this.gaussianKernelSize = gaussianKernelSize;
+            this.gaussianSigmaX = gaussianSigmaX;
+            this.gaussianSigmaY = gaussianSigmaY;
+            this.binarization = binarization;
+            this.binaryThreshold = binaryThreshold;
+            this.binaryMaxValue = binaryMaxValue;
+            this.scaling = scaling;
+            this.scaleFactorX = scaleFactorX;
+            this.scaleFactorY = scaleFactorY;
+        }
+
+        static PreprocessKey of(ImageMatchConfig config) {
+            boolean blur = config.isEnableGaussianBlur();
+            boolean binary = config.isEnableBinarization();
+            boolean scale = config.isEnableScaling();
+            return new PreprocessKey(
+                    config.isEnableGrayscale(),
+                    blur,
+                    blur ? config.getGaussianKernelSize() : 0,
+                    blur ? config.getGaussianSigmaX() : 0.0,
+                    blur ? config.getGaussianSigmaY() : 0.0,
+                    binary,
+                    binary ? config.getBinaryThreshold() : 0.0,
+                    binary ? config.getBinaryMaxValue() : 0.0,
+                    scale,
+                    scale ? config.getScaleFactorX() : 1.0,
+                    scale ? config.getScaleFactorY() : 1.0);
+        }
+
+        /**
+         * 写入模板包索引（字段顺序与 {@link #read(DataInput)} 一致）
+         */
+        void write(DataOutput out) throws IOException {
+            out.writeBoolean(grayscale);
+            out.writeBoolean(gaussianBlur);
+            out.writeInt(gaussianKernelSize);
+            out.writeDouble(gaussianSigmaX);
+            out.writeDouble(gaussianSigmaY);
+            out.writeBoolean(binarization);
+            out.writeDouble(binaryThreshold);
+            out.writeDouble(binaryMaxValue);
+            out.writeBoolean(scaling);
+            out.writeDouble(scaleFactorX);
+            out.writeDouble(scaleFactorY);
+        }
+
+        /**
+         * 从模板包索引读取
+         */
+        static PreprocessKey read(DataInput in) throws IOException {
+            return new PreprocessKey(in.readBoolean(), in.readBoolean(), in.readInt(), in.readDouble(),
+                    in.readDouble(), in.readBoolean(), in.readDouble(), in.readDouble(), in.readBoolean(),
+                    in.readDouble(), in.readDouble());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PreprocessKey)) {
+                return false;
+            }
+            PreprocessKey other = (PreprocessKey) o;
+            return grayscale == other.grayscale
+                    && gaussianBlur == other.gaussianBlur
+                    && gaussianKernelSize == other.gaussianKernelSize
+                    && Double.compare(gaussianSigmaX, other.gaussianSigmaX) == 0
+                    && Double.compare(gaussianSigmaY, other.gaussianSigmaY) == 0
+                    && binarization == other.binarization
+                    && Double.compare(binaryThreshold, other.binaryThreshold) == 0
+                    && Double.compare(binaryMaxValue, other.binaryMaxValue) == 0
+                    && scaling == other.scaling
+                    && Double.compare(scaleFactorX, other.scaleFactorX) == 0
+                    && Double.compare(scaleFactorY, other.scaleFactorY) == 0;
+        }
+
+        /**
+         * 模板包中保存该哈希用于校验索引，字段顺序不能改变
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(grayscale, gaussianBlur, gaussianKernelSize, gaussianSigmaX, gaussianSigmaY,
+                    binarization, binaryThreshold, binaryMaxValue, scaling, scaleFactorX, scaleFactorY);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.yifei.tools.image.matcher;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 分块并行模板匹配
+ * 将目标图像按行切分为互相重叠的横条（重叠高度为模板高度减1，保证任何匹配位置都完整落在某一条内），
+ * 各横条在ForkJoinPool中并行执行matchTemplate，最后合并各条的minMaxLoc结果得到全局最佳位置
+ *
+ * 各横条的响应直接写入完整响应图的对应行，因此热力图与单次匹配完全一致
+ *
+ * @author yifei
+ * @version 1.0
+ */
+class TiledMatcher {
+
+    // 每个线程分配的横条数，略多于线程数便于负载均衡
+    private static final int STRIPS_PER_THREAD = 2;
+
+    // 单个横条的最少响应行数，过细的切分会让重叠部分的重复计算占比过高
+    private static final int MIN_STRIP_ROWS = 32;
+
+    // 按并行度缓存的线程池
+    private static final Map<Integer, ForkJoinPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * 执行分块并行匹配
+     *
+     * @param target 预处理后的目标图像
+     * @param template 预处理后的模板
+     * @param config 匹配配置
+     * @param response 输出：完整的匹配响应图
+     * @return 全局最佳匹配
+     */
+    static MatchCandidate match(Mat target, Mat template, ImageMatchConfig config, Mat response) {
+        int parallelism = config.getTileParallelism() > 0
+                ? config.getTileParallelism()
+                : Runtime.getRuntime().availableProcessors();
+
+        int responseRows = target.rows() - template.rows() + 1;
+        int responseCols = target.cols() - template.cols() + 1;
+        if (responseRows <= 0 || responseCols <= 0) {
+            throw new IllegalArgumentException("模板尺寸大于目标图像");
+        }
+
+        response.create(responseRows, responseCols, CvType.CV_32FC1);
+
+        int strips = Math.max(1, Math.min(parallelism * STRIPS_PER_THREAD, responseRows / MIN_STRIP_ROWS));
+        if (strips == 1) {
+            Imgproc.matchTemplate(target, template, response, config.getMatchMethod());
+            return MatchCandidate.best(response, config.getMatchMethod(), 0, 0);
+        }
+
+        StripTask task = new StripTask(target, template, response, config.getMatchMethod(), strips, 0, strips);
+        return getPool(parallelism).invoke(task);
+    }
+
+    /**
+     * 获取指定并行度的线程池
+     */
+    private static ForkJoinPool getPool(int parallelism) {
+        return pools.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    /**
+     * 横条匹配任务，对 [fromStrip, toStrip) 范围二分递归
+     */
+    private static class StripTask extends RecursiveTask<MatchCandidate> {
+
+        private final Mat target;
+        private final Mat template;
+        private final Mat response;
+        private final int method;
+        private final int totalStrips;
+        private final int fromStrip;
+        private final int toStrip;
+
+        StripTask(Mat target, Mat template, Mat response, int method, int totalStrips, int fromStrip, int toStrip) {
+            this.target = target;
+            this.template = template;
+            this.response = response;
+            this.method = method;
+            this.totalStrips = totalStrips;
+            this.fromStrip = fromStrip;
+            this.toStrip = toStrip;
+        }
+
+        @Override
+        protected MatchCandidate compute() {
+            if (toStrip - fromStrip == 1) {
+                return matchStrip(fromStrip);
+            }
+
+            int middle = (fromStrip + toStrip) >>> 1;
+            StripTask left = new StripTask(target, template, response, method, totalStrips, fromStrip, middle);
+            StripTask right = new StripTask(target, template, response, method, totalStrips, middle, toStrip);
+            left.fork();
+            MatchCandidate rightBest = right.compute();
+            MatchCandidate leftBest = left.join();
+            return leftBest.isBetterThan(rightBest) ? leftBest : rightBest;
+        }
+
+        /**
+         * 匹配单个横条，结果写入完整响应图的对应行
+         */
+        private MatchCandidate matchStrip(int strip) {
+            int responseRows = response.rows();
+            int rowStart = (int) ((long) responseRows * strip / totalStrips);
+            int rowEnd = (int) ((long) responseRows * (strip + 1) / totalStrips);
+
+            // 目标横条需要额外包含模板高度减1行，作为与下一条的重叠区
+            Mat targetStrip = target.submat(new Rect(0, rowStart, target.cols(), rowEnd - rowStart + template.rows() - 1));
+            Mat responseStrip = response.submat(new Rect(0, rowStart, response.cols(), rowEnd - rowStart));
+            try {
+                // 输出尺寸与类型一致，matchTemplate直接写入responseStrip指向的内存
+                Imgproc.matchTemplate(targetStrip, template, responseStrip, method);
+                return MatchCandidate.best(responseStrip, method, 0, rowStart);
+            } finally {
+                responseStrip.release();
+                targetStrip.release();
+            }
+        }
+    }
+}
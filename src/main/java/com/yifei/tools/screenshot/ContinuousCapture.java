@@ -0,0 +1,336 @@
+package com.yifei.tools.screenshot;
+
+import com.yifei.tools.utils.StageMetrics;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 连续截图
+ * 一个后台线程按固定帧率从画面来源抓取整幅画面，写入启动时预分配好的环形缓冲区；
+ * 匹配时通过 {@link #latestFrame()} 直接取最新一帧，不再在匹配线程上等待截图
+ *
+ * 每个缓冲槽带引用计数：被读取中的槽不会被覆盖，所有空闲槽都被占用时本轮抓取跳过并计数，
+ * 读取方用完后必须关闭Frame归还
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class ContinuousCapture {
+
+    // 当前运行中的连续截图，ImageMatcher内存截图时优先从这里取帧
+    private static volatile ContinuousCapture current;
+
+    private final FrameSource source;
+    private final long periodNanos;
+    private final Slot[] slots;
+    private final int width;
+    private final int height;
+    private final Thread producer;
+    private volatile boolean running = true;
+
+    // 最新一帧所在的槽，只由生产线程写入
+    private volatile Slot latest;
+    private int nextSlot;
+    private long sequence;
+    private final Object frameLock = new Object();
+
+    private final AtomicLong producedCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong acquiredCount = new AtomicLong();
+    private final AtomicLong captureTotalNanos = new AtomicLong();
+
+    private ContinuousCapture(FrameSource source, double fps, int ringSize) {
+        Dimension size = source.getSize();
+        this.source = source;
+        this.width = size.width;
+        this.height = size.height;
+        this.periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / fps);
+        this.slots = new Slot[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            slots[i] = new Slot(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+        }
+        this.producer = new Thread(this::produceLoop, "continuous-capture");
+        producer.setDaemon(true);
+    }
+
+    /**
+     * 启动连续截图并设为当前实例（已有运行中的实例时先停止）
+     *
+     * @param source 画面来源
+     * @param fps 抓取帧率
+     * @param ringSize 环形缓冲区槽数，至少为2（一个保存最新帧，一个用于写入下一帧）
+     * @return 连续截图
+     */
+    public static ContinuousCapture start(FrameSource source, double fps, int ringSize) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("帧率必须大于0");
+        }
+        if (ringSize < 2) {
+            throw new IllegalArgumentException("环形缓冲区至少需要2个槽");
+        }
+        ContinuousCapture capture = new ContinuousCapture(source, fps, ringSize);
+        synchronized (ContinuousCapture.class) {
+            if (current != null) {
+                current.stop();
+            }
+            current = capture;
+        }
+        capture.producer.start();
+        System.out.println(String.format("连续截图已启动 - 画面: %dx%d, 帧率: %.1f, 缓冲槽: %d (%.1fMB)",
+                capture.width, capture.height, fps, ringSize, ringSize * 4.0 * capture.width * capture.height / 1024 / 1024));
+        return capture;
+    }
+
+    /**
+     * 获取当前运行中的连续截图
+     *
+     * @return 连续截图，未启动时返回null
+     */
+    public static ContinuousCapture current() {
+        return current;
+    }
+
+    /**
+     * 停止生产线程；已取出的帧仍然有效，直到调用方关闭
+     */
+    public void stop() {
+        running = false;
+        synchronized (ContinuousCapture.class) {
+            if (current == this) {
+                current = null;
+            }
+        }
+        producer.interrupt();
+        synchronized (frameLock) {
+            frameLock.notifyAll();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 取最新一帧，不等待
+     *
+     * @return 最新帧，还没有抓到任何一帧时返回null；用完后必须关闭
+     */
+    public Frame latestFrame() {
+        while (true) {
+            Slot slot = latest;
+            if (slot == null) {
+                return null;
+            }
+            // 槽正在被写入（-1）说明最新帧已经换到别的槽，重新读取
+            int refs = slot.refs.get();
+            if (refs >= 0 && slot.refs.compareAndSet(refs, refs + 1)) {
+                acquiredCount.incrementAndGet();
+                return new Frame(slot);
+            }
+        }
+    }
+
+    /**
+     * 等待序号大于指定值的新帧（例如点击之后需要一帧点击后的画面）
+     *
+     * @param afterSequence 序号下限（不含），传入-1时等同于latestFrame但会等待第一帧
+     * @param timeoutMillis 超时时间（毫秒）
+     * @return 新帧，超时或已停止时返回null；用完后必须关闭
+     */
+    public Frame awaitFrame(long afterSequence, long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (frameLock) {
+            while (true) {
+                Slot slot = latest;
+                if (slot != null && slot.sequence > afterSequence) {
+                    break;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (!running || remaining <= 0) {
+                    return null;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(frameLock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+        return latestFrame();
+    }
+
+    /**
+     * 生产线程：按帧率抓取，抓取耗时超过一个周期时不补帧
+     */
+    private void produceLoop() {
+        long next = System.nanoTime();
+        while (running) {
+            long start = System.nanoTime();
+            produceOne();
+            captureTotalNanos.addAndGet(System.nanoTime() - start);
+
+            next += periodNanos;
+            long now = System.nanoTime();
+            if (next < now) {
+                next = now;
+            } else {
+                LockSupport.parkNanos(next - now);
+            }
+        }
+    }
+
+    private void produceOne() {
+        Slot slot = claimFreeSlot();
+        if (slot == null) {
+            skippedCount.incrementAndGet();
+            return;
+        }
+        boolean success;
+        long metricStart = StageMetrics.start();
+        try {
+            success = source.captureInto(slot.image);
+        } catch (Exception e) {
+            System.err.println("连续截图抓取失败: " + e.getMessage());
+            success = false;
+        }
+        if (!success) {
+            failedCount.incrementAndGet();
+            slot.refs.set(0);
+            return;
+        }
+        StageMetrics.recordCapture("continuous_capture", metricStart);
+        slot.sequence = ++sequence;
+        slot.timestampNanos = System.nanoTime();
+        slot.refs.set(0);
+        latest = slot;
+        producedCount.incrementAndGet();
+        synchronized (frameLock) {
+            frameLock.notifyAll();
+        }
+    }
+
+    /**
+     * 从下一个位置开始找一个空闲槽（不是最新帧、没有被读取），用-1标记为写入中
+     */
+    private Slot claimFreeSlot() {
+        for (int i = 0; i < slots.length; i++) {
+            Slot slot = slots[(nextSlot + i) % slots.length];
+            if (slot != latest && slot.refs.compareAndSet(0, -1)) {
+                nextSlot = (nextSlot + i + 1) % slots.length;
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    public Dimension getSize() {
+        return new Dimension(width, height);
+    }
+
+    public long getProducedCount() {
+        return producedCount.get();
+    }
+
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * 获取统计信息
+     *
+     * @return 统计信息字符串
+     */
+    public String getStatistics() {
+        long attempts = producedCount.get() + skippedCount.get() + failedCount.get();
+        return String.format("连续截图 - 已抓取: %d, 无空闲槽跳过: %d, 失败: %d, 取帧: %d, 平均抓取耗时: %.2fms",
+                getProducedCount(), getSkippedCount(), getFailedCount(), acquiredCount.get(),
+                attempts == 0 ? 0.0 : captureTotalNanos.get() / 1_000_000.0 / attempts);
+    }
+
+    /**
+     * 环形缓冲区的一个槽
+     * refs：-1写入中，0空闲，大于0为正在读取的Frame数量
+     */
+    private static class Slot {
+        private final BufferedImage image;
+        private final AtomicInteger refs = new AtomicInteger();
+        private volatile long sequence;
+        private volatile long timestampNanos;
+
+        Slot(BufferedImage image) {
+            this.image = image;
+        }
+    }
+
+    /**
+     * 从环形缓冲区取出的一帧，关闭前对应的槽不会被覆盖
+     */
+    public static class Frame implements FrameLease {
+        private final Slot slot;
+        private final long sequence;
+        private final long timestampNanos;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Frame(Slot slot) {
+            this.slot = slot;
+            this.sequence = slot.sequence;
+            this.timestampNanos = slot.timestampNanos;
+        }
+
+        /**
+         * 帧序号，从1开始递增
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * 抓取完成时的System.nanoTime()
+         */
+        public long getTimestampNanos() {
+            return timestampNanos;
+        }
+
+        public long getAgeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - timestampNanos);
+        }
+
+        /**
+         * 整幅画面（TYPE_INT_RGB），只在关闭前有效，不要修改
+         */
+        @Override
+        public BufferedImage getImage() {
+            return slot.image;
+        }
+
+        /**
+         * 把指定区域复制为独立的 TYPE_INT_RGB 图像（逐行arraycopy），复制后即可关闭本帧
+         *
+         * @param area 区域，必须在画面范围内
+         * @return 区域图像
+         */
+        public BufferedImage copyArea(Rectangle area) {
+            return FrameSource.copyArea(slot.image, area);
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                slot.refs.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.yifei.tools.screenshot;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/**
+ * 单张图片画面来源
+ * 构造时解码一次，之后每次抓取都返回同一幅画面；等待模板出现/消失时只推进虚拟时间，超时立即结束
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class FileFrameSource extends ReplayFrameSource {
+
+    private final File file;
+    private final BufferedImage frame;
+
+    /**
+     * @param file 图片文件
+     * @throws IOException 文件不存在或无法解码
+     */
+    public FileFrameSource(File file) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("无法解码图片: " + file);
+        }
+        this.file = file;
+        this.frame = FrameSource.toIntRgb(image);
+    }
+
+    @Override
+    public Dimension getSize() {
+        return new Dimension(frame.getWidth(), frame.getHeight());
+    }
+
+    @Override
+    protected BufferedImage frameAt(long timeMillis) {
+        return frame;
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,23 @@
+package com.yifei.tools.screenshot;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 借用的共享画面（连续截图的缓冲槽或合并截图的结果），关闭前图像有效且不会被覆盖
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public interface FrameLease extends AutoCloseable {
+
+    /**
+     * 借用的图像，只在关闭前有效，不要修改
+     */
+    BufferedImage getImage();
+
+    /**
+     * 归还，重复调用无影响
+     */
+    @Override
+    void close();
+}
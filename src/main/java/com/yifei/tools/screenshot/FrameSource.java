@@ -0,0 +1,139 @@
+package com.yifei.tools.screenshot;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * 画面来源
+ * ImageMatcher的所有屏幕匹配入口和连续截图（见ContinuousCapture）都从画面来源取帧：
+ * 实时屏幕（ScreenFrameSource）之外，还可以接入单张图片、带时间文件的图片序列和程序生成的合成画面，
+ * 用于回放录制的会话、在没有显示器的机器上做回归和基准测试
+ *
+ * 画面来源同时提供时钟：等待模板出现/消失时的计时和轮询间隔都经过来源的时钟，
+ * 回放类来源使用虚拟时间，等待不占用真实时间，回归样本可以尽快跑完
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public interface FrameSource {
+
+    /**
+     * 画面尺寸（整幅画面的宽高）
+     *
+     * @return 画面尺寸
+     */
+    Dimension getSize();
+
+    /**
+     * 抓取一帧画面
+     *
+     * @param area 抓取区域，为null时抓取整幅画面
+     * @return 图像（调用方只读，可能是来源内部缓存的帧），失败时返回null
+     */
+    BufferedImage capture(Rectangle area);
+
+    /**
+     * 把整幅画面抓取到预分配的图像中
+     * 默认实现抓取后按行复制光栅数据；能直接写入目标图像的来源应覆盖此方法，避免每帧分配
+     *
+     * @param target 预分配的 TYPE_INT_RGB 图像，尺寸与 {@link #getSize()} 一致
+     * @return 是否抓取成功
+     */
+    default boolean captureInto(BufferedImage target) {
+        BufferedImage image = capture(null);
+        if (image == null || image.getWidth() != target.getWidth() || image.getHeight() != target.getHeight()) {
+            return false;
+        }
+        copyPixels(image, target);
+        return true;
+    }
+
+    /**
+     * 当前时间（纳秒，只用于计算时间差），默认为System.nanoTime()
+     *
+     * @return 当前时间
+     */
+    default long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * 等待指定时间，默认为Thread.sleep；回放类来源只推进虚拟时间，立即返回
+     *
+     * @param millis 等待时间（毫秒）
+     * @throws InterruptedException 线程被中断
+     */
+    default void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    /**
+     * 复制整幅图像的像素到尺寸相同的 TYPE_INT_RGB 图像
+     * 源图像为紧凑整型光栅（Robot截图）时逐行arraycopy，否则逐行getRGB
+     *
+     * @param source 源图像
+     * @param target 目标图像
+     */
+    static void copyPixels(BufferedImage source, BufferedImage target) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] dest = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        WritableRaster raster = source.getRaster();
+        if ((source.getType() == BufferedImage.TYPE_INT_RGB || source.getType() == BufferedImage.TYPE_INT_ARGB)
+                && raster.getParent() == null
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getDataBuffer().getOffset() == 0
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+            for (int row = 0; row < height; row++) {
+                System.arraycopy(pixels, row * stride, dest, row * width, width);
+            }
+        } else {
+            source.getRGB(0, 0, width, height, dest, 0, width);
+        }
+    }
+
+    /**
+     * 把 TYPE_INT_RGB 图像的指定区域按行复制为独立的 TYPE_INT_RGB 图像
+     *
+     * @param source 源图像（由 {@link #toIntRgb(BufferedImage)} 或预分配得到的紧凑光栅）
+     * @param area 区域，必须在图像范围内
+     * @return 区域图像
+     */
+    static BufferedImage copyArea(BufferedImage source, Rectangle area) {
+        int sourceWidth = source.getWidth();
+        int[] pixels = ((DataBufferInt) source.getRaster().getDataBuffer()).getData();
+        BufferedImage copy = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_RGB);
+        int[] dest = ((DataBufferInt) copy.getRaster().getDataBuffer()).getData();
+        for (int row = 0; row < area.height; row++) {
+            System.arraycopy(pixels, (area.y + row) * sourceWidth + area.x, dest, row * area.width, area.width);
+        }
+        return copy;
+    }
+
+    /**
+     * 转换为 TYPE_INT_RGB（与Robot截图相同的像素格式，后续复制和灰度转换都走快速路径）
+     *
+     * @param image 图像（ImageIO读取的PNG通常为 TYPE_3BYTE_BGR）
+     * @return 已经是 TYPE_INT_RGB 时原样返回，否则返回转换后的新图像
+     */
+    static BufferedImage toIntRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB && image.getRaster().getParent() == null) {
+            return image;
+        }
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = converted.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return converted;
+    }
+}
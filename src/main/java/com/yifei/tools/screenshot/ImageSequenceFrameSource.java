@@ -0,0 +1,238 @@
+package com.yifei.tools.screenshot;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+/**
+ * 图片序列画面来源（回放录制的会话）
+ * 目录中的每张图片是一帧，按时间文件中的时间点排列；虚拟时间处于两帧之间时返回前一帧。
+ * 回放不等待真实时间：等待模板出现/消失的轮询间隔只推进虚拟时间，
+ * 也可以通过 {@link #nextFrame()} 逐帧跳转，回归样本能以解码和匹配的速度跑完
+ *
+ * 时间文件为目录下的 timing.txt，每行“文件名 毫秒时间点”（空格、制表符或逗号分隔，#开头为注释），
+ * 时间点从第一帧开始计算；没有时间文件时按文件名排序，帧间隔固定
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class ImageSequenceFrameSource extends ReplayFrameSource {
+
+    public static final String TIMING_FILE = "timing.txt";
+
+    private static final long DEFAULT_INTERVAL_MILLIS = 100;
+
+    private final File dir;
+    private final File[] files;
+    private final long[] times;
+    private final Dimension size;
+
+    // 只缓存当前帧：回放时同一帧会被多次抓取，切换到下一帧后不再需要
+    private int cachedIndex = -1;
+    private BufferedImage cachedFrame;
+    private long decodeCount;
+
+    /**
+     * @param dir 图片序列目录
+     * @throws IOException 目录中没有图片、时间文件格式错误或第一帧无法解码
+     */
+    public ImageSequenceFrameSource(File dir) throws IOException {
+        this(dir, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param dir 图片序列目录
+     * @param defaultIntervalMillis 没有时间文件时的帧间隔（毫秒）
+     * @throws IOException 目录中没有图片、时间文件格式错误或第一帧无法解码
+     */
+    public ImageSequenceFrameSource(File dir, long defaultIntervalMillis) throws IOException {
+        this.dir = dir;
+        List<Frame> frames = new File(dir, TIMING_FILE).isFile()
+                ? readTimingFile(dir)
+                : listFrames(dir, defaultIntervalMillis);
+        if (frames.isEmpty()) {
+            throw new IOException("目录中没有图片: " + dir);
+        }
+        frames.sort(Comparator.comparingLong(frame -> frame.time));
+
+        long origin = frames.get(0).time;
+        this.files = new File[frames.size()];
+        this.times = new long[frames.size()];
+        for (int i = 0; i < frames.size(); i++) {
+            files[i] = frames.get(i).file;
+            times[i] = frames.get(i).time - origin;
+        }
+
+        BufferedImage first = decode(0);
+        if (first == null) {
+            throw new IOException("无法解码第一帧: " + files[0]);
+        }
+        this.size = new Dimension(first.getWidth(), first.getHeight());
+        cachedIndex = 0;
+        cachedFrame = first;
+    }
+
+    @Override
+    public Dimension getSize() {
+        return new Dimension(size);
+    }
+
+    @Override
+    protected synchronized BufferedImage frameAt(long timeMillis) {
+        int index = indexAt(timeMillis);
+        if (index != cachedIndex) {
+            BufferedImage frame = decode(index);
+            if (frame == null) {
+                return null;
+            }
+            if (frame.getWidth() != size.width || frame.getHeight() != size.height) {
+                System.err.println("帧尺寸与第一帧不一致: " + files[index]);
+                return null;
+            }
+            cachedIndex = index;
+            cachedFrame = frame;
+        }
+        return cachedFrame;
+    }
+
+    /**
+     * 把虚拟时间跳到下一帧的时间点
+     *
+     * @return 是否还有下一帧；已是最后一帧时返回false，时间不变
+     */
+    public boolean nextFrame() {
+        int index = getFrameIndex();
+        if (index + 1 >= times.length) {
+            return false;
+        }
+        seek(times[index + 1]);
+        return true;
+    }
+
+    /**
+     * 当前虚拟时间对应的帧序号（从0开始）
+     */
+    public int getFrameIndex() {
+        return indexAt(getTimeMillis());
+    }
+
+    public int getFrameCount() {
+        return files.length;
+    }
+
+    public File getFrameFile(int index) {
+        return files[index];
+    }
+
+    public long getFrameTime(int index) {
+        return times[index];
+    }
+
+    /**
+     * 整个序列的时长（最后一帧的时间点，毫秒）
+     */
+    public long getDuration() {
+        return times[times.length - 1];
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    public synchronized long getDecodeCount() {
+        return decodeCount;
+    }
+
+    /**
+     * 二分查找时间点不晚于指定时间的最后一帧
+     */
+    private int indexAt(long timeMillis) {
+        int index = Arrays.binarySearch(times, timeMillis);
+        if (index < 0) {
+            index = -index - 2;
+        } else {
+            // 多帧时间点相同时取最后一帧
+            while (index + 1 < times.length && times[index + 1] == timeMillis) {
+                index++;
+            }
+        }
+        return Math.max(0, index);
+    }
+
+    private BufferedImage decode(int index) {
+        try {
+            BufferedImage image = ImageIO.read(files[index]);
+            if (image == null) {
+                System.err.println("无法解码图片: " + files[index]);
+                return null;
+            }
+            decodeCount++;
+            return FrameSource.toIntRgb(image);
+        } catch (IOException e) {
+            System.err.println("读取图片失败: " + files[index] + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static List<Frame> readTimingFile(File dir) throws IOException {
+        List<Frame> frames = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(new File(dir, TIMING_FILE).toPath(), StandardCharsets.UTF_8)) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] parts = trimmed.split("[\\s,]+");
+            if (parts.length < 2) {
+                throw new IOException(TIMING_FILE + " 第" + lineNumber + "行格式错误，应为“文件名 毫秒时间点”: " + line);
+            }
+            File file = new File(dir, parts[0]);
+            if (!file.isFile()) {
+                throw new IOException(TIMING_FILE + " 第" + lineNumber + "行的图片不存在: " + file);
+            }
+            try {
+                frames.add(new Frame(file, Long.parseLong(parts[1])));
+            } catch (NumberFormatException e) {
+                throw new IOException(TIMING_FILE + " 第" + lineNumber + "行时间点不是整数: " + parts[1]);
+            }
+        }
+        return frames;
+    }
+
+    private static List<Frame> listFrames(File dir, long intervalMillis) {
+        File[] images = dir.listFiles(file -> file.isFile() && isImage(file.getName()));
+        List<Frame> frames = new ArrayList<>();
+        if (images == null) {
+            return frames;
+        }
+        Arrays.sort(images, Comparator.comparing(File::getName));
+        for (int i = 0; i < images.length; i++) {
+            frames.add(new Frame(images[i], i * intervalMillis));
+        }
+        return frames;
+    }
+
+    private static boolean isImage(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".bmp");
+    }
+
+    private static class Frame {
+        private final File file;
+        private final long time;
+
+        Frame(File file, long time) {
+            this.file = file;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.yifei.tools.screenshot;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按虚拟时间回放的画面来源
+ * 时钟从0开始，只在 {@link #sleep(long)} / {@link #advance(long)} 时前进，不等待真实时间；
+ * 抓取时返回虚拟时间点对应的画面，区域按行复制
+ *
+ * 同一个回放来源一般只由一个回放线程使用，多个线程共用时各自的等待都会推进同一个时钟
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public abstract class ReplayFrameSource implements FrameSource {
+
+    private final AtomicLong clockNanos = new AtomicLong();
+
+    /**
+     * 获取虚拟时间点对应的整幅画面
+     *
+     * @param timeMillis 虚拟时间（毫秒，从0开始）
+     * @return TYPE_INT_RGB 图像，尺寸与 {@link #getSize()} 一致；失败时返回null
+     */
+    protected abstract BufferedImage frameAt(long timeMillis);
+
+    @Override
+    public BufferedImage capture(Rectangle area) {
+        BufferedImage frame = frameAt(getTimeMillis());
+        if (frame == null || area == null) {
+            return frame;
+        }
+        Dimension size = getSize();
+        if (area.width <= 0 || area.height <= 0 || !new Rectangle(size).contains(area)) {
+            System.err.println("抓取区域超出画面范围: " + area + ", 画面: " + size.width + "x" + size.height);
+            return null;
+        }
+        return FrameSource.copyArea(frame, area);
+    }
+
+    @Override
+    public long nanoTime() {
+        return clockNanos.get();
+    }
+
+    /**
+     * 只推进虚拟时间，立即返回
+     */
+    @Override
+    public void sleep(long millis) {
+        advance(millis);
+    }
+
+    /**
+     * 推进虚拟时间
+     *
+     * @param millis 时间（毫秒）
+     */
+    public void advance(long millis) {
+        if (millis > 0) {
+            clockNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+
+    /**
+     * 把虚拟时间设置到指定时间点（可以回退，用于重复回放）
+     *
+     * @param timeMillis 时间（毫秒）
+     */
+    public void seek(long timeMillis) {
+        clockNanos.set(TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeMillis)));
+    }
+
+    /**
+     * 当前虚拟时间（毫秒）
+     */
+    public long getTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(clockNanos.get());
+    }
+}
@@ -0,0 +1,34 @@
+package com.yifei.tools.screenshot;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * 实时屏幕画面来源（Robot截图，真实时间）
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class ScreenFrameSource implements FrameSource {
+
+    /**
+     * 共享实例，ImageMatchConfig未指定画面来源时使用
+     */
+    public static final ScreenFrameSource INSTANCE = new ScreenFrameSource();
+
+    @Override
+    public Dimension getSize() {
+        // 每次读取，分辨率变化后立即生效
+        return ScreenshotUtil.getScreenSize();
+    }
+
+    @Override
+    public BufferedImage capture(Rectangle area) {
+        if (area == null) {
+            Dimension size = getSize();
+            return ScreenshotUtil.captureScreenImage(0, 0, size.width, size.height);
+        }
+        return ScreenshotUtil.captureScreenImage(area.x, area.y, area.width, area.height);
+    }
+}
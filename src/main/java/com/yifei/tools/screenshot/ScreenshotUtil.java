@@ -1,7 +1,12 @@
 package com.yifei.tools.screenshot;
 
+import com.yifei.tools.utils.StageMetrics;
+
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import javax.imageio.ImageIO;
@@ -58,7 +63,9 @@ public class ScreenshotUtil {
             Rectangle screenRect = new Rectangle(x, y, width, height);
             
             // 截取屏幕
+            long captureStart = StageMetrics.start();
             BufferedImage screenImage = robot.createScreenCapture(screenRect);
+            StageMetrics.recordCapture("capture", captureStart);
             
             // 确保输出目录存在
             File outputFile = new File(outputPath);
@@ -71,7 +78,9 @@ public class ScreenshotUtil {
             String format = getImageFormat(outputPath);
             
             // 保存图片
+            long saveStart = StageMetrics.start();
             boolean success = ImageIO.write(screenImage, format, outputFile);
+            StageMetrics.recordCapture("save", saveStart);
             
             if (success) {
                 System.out.println("截图成功保存到: " + outputPath);
@@ -92,6 +101,108 @@ public class ScreenshotUtil {
         }
     }
     
+    /**
+     * 截取屏幕指定区域，直接返回内存中的图像（不写入磁盘）
+     * 
+     * @param x 截图区域左上角x坐标
+     * @param y 截图区域左上角y坐标
+     * @param width 截图区域宽度
+     * @param height 截图区域高度
+     * @return 截取的图像，失败时返回null
+     */
+    public static BufferedImage captureScreenImage(int x, int y, int width, int height) {
+        if (robot == null) {
+            System.err.println("Robot未初始化，无法进行截图");
+            return null;
+        }
+        
+        if (width <= 0 || height <= 0) {
+            System.err.println("宽度和高度必须大于0");
+            return null;
+        }
+        
+        try {
+            long start = StageMetrics.start();
+            BufferedImage image = robot.createScreenCapture(new Rectangle(x, y, width, height));
+            StageMetrics.recordCapture("capture", start);
+            return image;
+        } catch (Exception e) {
+            System.err.println("截图过程中发生异常: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * 截取全屏，直接返回内存中的图像（不写入磁盘）
+     * 
+     * @return 截取的图像，失败时返回null
+     */
+    public static BufferedImage captureFullScreenImage() {
+        Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+        return captureScreenImage(0, 0, screenSize.width, screenSize.height);
+    }
+    
+    /**
+     * 截取屏幕指定区域，直接得到8位灰度像素（不经过BGR三通道中间结果）
+     * 
+     * @param x 截图区域左上角x坐标
+     * @param y 截图区域左上角y坐标
+     * @param width 截图区域宽度
+     * @param height 截图区域高度
+     * @param buffer 可复用的输出缓冲区，长度不足时重新分配，可为null
+     * @return 按行排列的灰度像素（前 width*height 字节有效），失败时返回null
+     */
+    public static byte[] captureScreenGray(int x, int y, int width, int height, byte[] buffer) {
+        BufferedImage image = captureScreenImage(x, y, width, height);
+        return image == null ? null : toGray(image, buffer);
+    }
+    
+    /**
+     * 一次遍历把截图的ARGB像素转换为8位灰度（亮度）
+     * 使用与OpenCV COLOR_BGR2GRAY相同的定点系数，结果与先转BGR再cvtColor逐像素一致
+     * 
+     * @param image 截图（Robot返回的 TYPE_INT_RGB 直接读取光栅数组，其它类型逐行getRGB）
+     * @param buffer 可复用的输出缓冲区，长度不足时重新分配，可为null
+     * @return 按行排列的灰度像素（前 width*height 字节有效）
+     */
+    public static byte[] toGray(BufferedImage image, byte[] buffer) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] gray = buffer != null && buffer.length >= width * height ? buffer : new byte[width * height];
+        
+        WritableRaster raster = image.getRaster();
+        if ((image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB)
+                && raster.getParent() == null
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getDataBuffer().getOffset() == 0
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+            for (int row = 0; row < height; row++) {
+                argbToGray(pixels, row * stride, gray, row * width, width);
+            }
+        } else {
+            int[] rowPixels = new int[width];
+            for (int row = 0; row < height; row++) {
+                image.getRGB(0, row, width, 1, rowPixels, 0, width);
+                argbToGray(rowPixels, 0, gray, row * width, width);
+            }
+        }
+        return gray;
+    }
+    
+    /**
+     * 转换一行像素：Y = (9798*R + 19235*G + 3735*B + 2^14) >> 15
+     */
+    private static void argbToGray(int[] pixels, int from, byte[] gray, int to, int count) {
+        for (int i = 0; i < count; i++) {
+            int argb = pixels[from + i];
+            int luma = ((argb >> 16) & 0xff) * 9798 + ((argb >> 8) & 0xff) * 19235 + (argb & 0xff) * 3735 + 16384;
+            gray[to + i] = (byte) (luma >> 15);
+        }
+    }
+    
     /**
      * 截取全屏并保存为图片文件
      * 
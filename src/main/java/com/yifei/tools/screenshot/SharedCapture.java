@@ -0,0 +1,269 @@
+package com.yifei.tools.screenshot;
+
+import com.yifei.tools.utils.StageMetrics;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并截图（single-flight）
+ * 多个线程同时匹配时各自截图会重复同样的工作，并在显示设备上串行排队。合并后同一画面来源同一时刻只有一次截图：
+ * - 正在进行或刚完成的截图覆盖所需区域、且开始时间在新鲜度窗口内时，直接共用这一帧
+ * - 否则排入下一次截图，当前截图完成后由第一个排队的线程截取所有排队区域的并集，各线程从中裁剪自己的区域
+ *
+ * 共用正在进行的截图意味着可能拿到调用之前（例如点击之前）开始的画面，因此默认不合并，
+ * 只有能接受窗口内旧画面的调用方才通过 captureCoalesceMillis 开启；排队合并的截图总是在调用之后开始
+ *
+ * 截图结果带引用计数，最后一个使用者归还后释放；整幅共用的图像在归还前有效，区域裁剪为独立副本后立即归还
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class SharedCapture {
+
+    public static final String OUTCOME_CAPTURED = "captured";
+    public static final String OUTCOME_JOINED = "joined";
+    public static final String OUTCOME_GATHERED = "gathered";
+
+    // 画面来源 -> 合并协调器（弱引用，临时创建的画面来源不会一直占用）
+    private static final Map<FrameSource, Coordinator> coordinators = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final AtomicLong requestCount = new AtomicLong();
+    private static final AtomicLong captureCount = new AtomicLong();
+    private static final AtomicLong joinedCount = new AtomicLong();
+    private static final AtomicLong gatheredCount = new AtomicLong();
+
+    /**
+     * 截取画面，与同时到达的调用合并
+     *
+     * @param source 画面来源
+     * @param area 截取区域，为null时截取整幅画面
+     * @param freshnessMillis 新鲜度窗口（毫秒）：共用的截图最早可以在调用前这么久开始
+     * @return 借用的画面，失败时返回null；用完后必须关闭
+     */
+    public static FrameLease capture(FrameSource source, Rectangle area, long freshnessMillis) {
+        Rectangle bounds = new Rectangle(source.getSize());
+        Rectangle wanted = area == null ? bounds : area;
+        if (wanted.width <= 0 || wanted.height <= 0 || !bounds.contains(wanted)) {
+            // 超出画面的区域不参与合并，按原样交给画面来源处理
+            BufferedImage image = source.capture(area);
+            return image == null ? null : new Lease(null, null, image);
+        }
+        Coordinator coordinator;
+        synchronized (coordinators) {
+            coordinator = coordinators.computeIfAbsent(source, key -> new Coordinator());
+        }
+        requestCount.incrementAndGet();
+        return coordinator.acquire(source, new Rectangle(wanted), TimeUnit.MILLISECONDS.toNanos(freshnessMillis));
+    }
+
+    public static long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public static long getCaptureCount() {
+        return captureCount.get();
+    }
+
+    /**
+     * 合并比例：没有自己截图、共用了其它调用截图的请求占比
+     *
+     * @return 0到1之间的比例，没有请求时为0
+     */
+    public static double getCoalescingRatio() {
+        long requests = requestCount.get();
+        return requests == 0 ? 0.0 : (joinedCount.get() + gatheredCount.get()) / (double) requests;
+    }
+
+    /**
+     * 获取统计信息
+     *
+     * @return 统计信息字符串
+     */
+    public static String getStatistics() {
+        return String.format("合并截图 - 请求: %d, 实际截图: %d, 共用进行中的截图: %d, 排队合并: %d, 合并比例: %.1f%%",
+                getRequestCount(), getCaptureCount(), joinedCount.get(), gatheredCount.get(), getCoalescingRatio() * 100);
+    }
+
+    private static void count(String outcome) {
+        switch (outcome) {
+            case OUTCOME_JOINED:
+                joinedCount.incrementAndGet();
+                break;
+            case OUTCOME_GATHERED:
+                gatheredCount.incrementAndGet();
+                break;
+            default:
+                captureCount.incrementAndGet();
+                break;
+        }
+        StageMetrics.recordCoalesce(outcome);
+    }
+
+    /**
+     * 一个画面来源的合并协调器，所有状态由自身监视器保护
+     * 不持有画面来源本身（由调用方每次传入），否则弱引用的映射键永远不会被回收
+     */
+    private static class Coordinator {
+        // 正在进行或已完成且仍有使用者的截图
+        private Flight current;
+        // 等待current完成后进行的下一次截图，排队期间不断扩大区域并集
+        private Flight next;
+
+        FrameLease acquire(FrameSource source, Rectangle wanted, long freshnessNanos) {
+            long arrival = System.nanoTime();
+            Flight flight;
+            synchronized (this) {
+                Flight active = current;
+                if (active != null && !active.failed && active.union.contains(wanted)
+                        && arrival - active.startNanos <= freshnessNanos) {
+                    flight = active;
+                    flight.refs++;
+                    count(OUTCOME_JOINED);
+                    awaitDone(flight);
+                    return lease(flight, wanted);
+                }
+                if (next != null) {
+                    flight = next;
+                    flight.union.add(wanted);
+                    flight.refs++;
+                    count(OUTCOME_GATHERED);
+                    awaitDone(flight);
+                    return lease(flight, wanted);
+                }
+                if (active != null && !active.done) {
+                    // 第一个排队的线程负责下一次截图：等当前截图完成后，截取排队期间所有区域的并集
+                    flight = new Flight(wanted);
+                    next = flight;
+                    awaitDone(active);
+                    next = null;
+                } else {
+                    flight = new Flight(wanted);
+                }
+                flight.startNanos = System.nanoTime();
+                current = flight;
+                count(OUTCOME_CAPTURED);
+            }
+
+            BufferedImage image = null;
+            boolean completed = false;
+            try {
+                image = source.capture(flight.union);
+                if (image != null) {
+                    image = FrameSource.toIntRgb(image);
+                }
+                completed = true;
+            } catch (Exception e) {
+                System.err.println("合并截图失败: " + e.getMessage());
+                completed = true;
+            } finally {
+                // 截图抛出Error时也要唤醒等待的线程，否则它们会一直等下去
+                synchronized (this) {
+                    flight.image = image;
+                    flight.failed = image == null;
+                    flight.done = true;
+                    notifyAll();
+                    if (!completed) {
+                        release(flight);
+                    }
+                }
+            }
+            synchronized (this) {
+                return lease(flight, wanted);
+            }
+        }
+
+        /**
+         * 等待截图完成；截图通常只需几十毫秒，等待期间不响应中断，结束后恢复中断标记
+         */
+        private void awaitDone(Flight flight) {
+            boolean interrupted = false;
+            while (!flight.done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * 在持有监视器时调用：整幅共用时借出截图本身，区域请求裁剪为副本后立即归还
+         */
+        private FrameLease lease(Flight flight, Rectangle wanted) {
+            if (flight.failed) {
+                release(flight);
+                return null;
+            }
+            if (wanted.equals(flight.union)) {
+                return new Lease(this, flight, flight.image);
+            }
+            BufferedImage crop = FrameSource.copyArea(flight.image, new Rectangle(
+                    wanted.x - flight.union.x, wanted.y - flight.union.y, wanted.width, wanted.height));
+            release(flight);
+            return new Lease(null, null, crop);
+        }
+
+        private synchronized void release(Flight flight) {
+            if (--flight.refs == 0) {
+                flight.image = null;
+                if (current == flight) {
+                    current = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 一次截图
+     */
+    private static class Flight {
+        private final Rectangle union;
+        private long startNanos;
+        private BufferedImage image;
+        private boolean done;
+        private boolean failed;
+        private int refs = 1;
+
+        Flight(Rectangle wanted) {
+            this.union = new Rectangle(wanted);
+        }
+    }
+
+    /**
+     * 借出的截图，关闭时减少引用计数
+     */
+    private static class Lease implements FrameLease {
+        private final Coordinator owner;
+        private final Flight flight;
+        private final BufferedImage image;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Lease(Coordinator owner, Flight flight, BufferedImage image) {
+            this.owner = owner;
+            this.flight = flight;
+            this.image = image;
+        }
+
+        @Override
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true) && owner != null) {
+                owner.release(flight);
+            }
+        }
+    }
+}
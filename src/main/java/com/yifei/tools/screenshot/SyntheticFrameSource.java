@@ -0,0 +1,95 @@
+package com.yifei.tools.screenshot;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * 程序生成的合成画面来源
+ * 按虚拟时间调用绘制回调生成画面，时间不变时复用上一次的结果；
+ * 用于在没有显示器的机器上构造可控的画面（例如按钮在第N毫秒出现）做回归和基准测试
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class SyntheticFrameSource extends ReplayFrameSource {
+
+    /**
+     * 画面绘制回调
+     */
+    public interface Renderer {
+
+        /**
+         * 绘制一帧画面，画布已清为黑色
+         *
+         * @param g 画布
+         * @param width 画面宽度
+         * @param height 画面高度
+         * @param timeMillis 虚拟时间（毫秒）
+         */
+        void render(Graphics2D g, int width, int height, long timeMillis);
+    }
+
+    private final int width;
+    private final int height;
+    private final Renderer renderer;
+
+    private final BufferedImage frame;
+    private long renderedTime = -1;
+    private long renderCount;
+
+    /**
+     * @param width 画面宽度
+     * @param height 画面高度
+     * @param renderer 绘制回调
+     */
+    public SyntheticFrameSource(int width, int height, Renderer renderer) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("画面宽度和高度必须大于0");
+        }
+        this.width = width;
+        this.height = height;
+        this.renderer = renderer;
+        this.frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Override
+    public Dimension getSize() {
+        return new Dimension(width, height);
+    }
+
+    @Override
+    protected synchronized BufferedImage frameAt(long timeMillis) {
+        if (timeMillis != renderedTime) {
+            render(frame, timeMillis);
+            renderedTime = timeMillis;
+        }
+        return frame;
+    }
+
+    /**
+     * 直接绘制到连续截图预分配的缓冲槽中，不经过中间图像
+     */
+    @Override
+    public boolean captureInto(BufferedImage target) {
+        render(target, getTimeMillis());
+        return true;
+    }
+
+    private void render(BufferedImage target, long timeMillis) {
+        Graphics2D g = target.createGraphics();
+        try {
+            g.clearRect(0, 0, width, height);
+            renderer.render(g, width, height, timeMillis);
+        } finally {
+            g.dispose();
+        }
+        synchronized (this) {
+            renderCount++;
+        }
+    }
+
+    public synchronized long getRenderCount() {
+        return renderCount;
+    }
+}
@@ -0,0 +1,151 @@
+package com.yifei.tools.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分阶段耗时统计
+ * 截图、读盘、解码、预处理、matchTemplate、minMaxLoc、调试图片保存等阶段的耗时记录为Micrometer计时器（带百分位直方图），
+ * 绑定MeterRegistry后即可通过 /actuator/metrics 和 /actuator/prometheus 查看
+ *
+ * 未绑定MeterRegistry时 {@link #start()} 返回0，{@link #recordMatch}/{@link #recordCapture} 直接返回，
+ * 不读取时钟、不拼接标签、不分配对象
+ *
+ * 计时器：
+ * - image.matcher.stage：标签 stage、template（模板文件名，与模板无关的阶段为none）、profile（配置预设名）
+ * - screenshot.stage：标签 stage
+ *
+ * 计数器：
+ * - screenshot.coalesce：合并截图（见SharedCapture）的请求数，标签 outcome（captured / joined / gathered）
+ *
+ * @author yifei
+ * @version 1.0
+ */
+public class StageMetrics {
+
+    public static final String MATCH_METRIC = "image.matcher.stage";
+    public static final String CAPTURE_METRIC = "screenshot.stage";
+    public static final String COALESCE_METRIC = "screenshot.coalesce";
+
+    public static final String NONE = "none";
+
+    private static volatile MeterRegistry registry;
+
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 绑定MeterRegistry，开始记录各阶段耗时
+     *
+     * @param meterRegistry 指标注册表
+     */
+    public static synchronized void bind(MeterRegistry meterRegistry) {
+        timers.clear();
+        counters.clear();
+        registry = meterRegistry;
+    }
+
+    /**
+     * 解除绑定，停止记录
+     */
+    public static synchronized void unbind() {
+        registry = null;
+        timers.clear();
+        counters.clear();
+    }
+
+    public static boolean isEnabled() {
+        return registry != null;
+    }
+
+    /**
+     * 阶段开始
+     *
+     * @return 开始时间（纳秒），未启用时返回0
+     */
+    public static long start() {
+        return registry == null ? 0L : System.nanoTime();
+    }
+
+    /**
+     * 记录匹配阶段耗时
+     *
+     * @param stage 阶段名
+     * @param start {@link #start()} 的返回值
+     * @param templatePath 模板路径，与模板无关的阶段传null
+     * @param profile 配置预设名
+     */
+    public static void recordMatch(String stage, long start, String templatePath, String profile) {
+        if (start == 0L) {
+            return;
+        }
+        MeterRegistry current = registry;
+        if (current == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        String template = templatePath == null ? NONE : new File(templatePath).getName();
+        String tagProfile = profile == null ? NONE : profile;
+        String key = MATCH_METRIC + '|' + stage + '|' + template + '|' + tagProfile;
+        timers.computeIfAbsent(key, k -> Timer.builder(MATCH_METRIC)
+                        .description("图像匹配各阶段耗时")
+                        .tag("stage", stage)
+                        .tag("template", template)
+                        .tag("profile", tagProfile)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofNanos(100_000))
+                        .maximumExpectedValue(Duration.ofSeconds(10))
+                        .register(current))
+                .record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录截图阶段耗时
+     *
+     * @param stage 阶段名
+     * @param start {@link #start()} 的返回值
+     */
+    public static void recordCapture(String stage, long start) {
+        if (start == 0L) {
+            return;
+        }
+        MeterRegistry current = registry;
+        if (current == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        timers.computeIfAbsent(CAPTURE_METRIC + '|' + stage, k -> Timer.builder(CAPTURE_METRIC)
+                        .description("截图各阶段耗时")
+                        .tag("stage", stage)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofNanos(100_000))
+                        .maximumExpectedValue(Duration.ofSeconds(10))
+                        .register(current))
+                .record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次合并截图请求的结果
+     *
+     * @param outcome captured（自己截图）、joined（共用进行中的截图）或 gathered（排队合并到下一次截图）
+     */
+    public static void recordCoalesce(String outcome) {
+        MeterRegistry current = registry;
+        if (current == null) {
+            return;
+        }
+        counters.computeIfAbsent(COALESCE_METRIC + '|' + outcome, k -> Counter.builder(COALESCE_METRIC)
+                        .description("合并截图请求数")
+                        .tag("outcome", outcome)
+                        .register(current))
+                .increment();
+    }
+}